@@ -0,0 +1,100 @@
+package org.murinrad.fakeapi.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.murinrad.fakeapi.client.datamodel.Post;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+import org.murinrad.fakeapi.client.datamodel.UserOverviewCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding an overview with the binary codec against JSON with Jackson.
+ * The sizes of both forms are printed by {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+  @Param({"1", "100", "10000"})
+  public int postCount;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final ObjectReader overviewReader = objectMapper.readerFor(UserOverview.class);
+  private UserOverview overview;
+  private ByteBuffer encodeBuffer;
+  private ByteBuffer encoded;
+  private byte[] json;
+
+  /**
+   * Prints the binary and the JSON size of the overviews benchmarked
+   */
+  public static void main(String[] args) throws IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    for (int postCount : new int[] {1, 100, 10000}) {
+      UserOverview overview = overview(postCount);
+      System.out.println(postCount + " posts, binary: " + UserOverviewCodec.encode(overview).length
+          + " bytes, json: " + objectMapper.writeValueAsBytes(overview).length + " bytes");
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    overview = overview(postCount);
+    encodeBuffer = ByteBuffer.allocate(UserOverviewCodec.encodedSize(overview));
+    encoded = ByteBuffer.wrap(UserOverviewCodec.encode(overview));
+    json = objectMapper.writeValueAsBytes(overview);
+  }
+
+  private static UserOverview overview(int postCount) throws IOException {
+    FakeAPIClientImpl client = new FakeAPIClientImpl("http://localhost");
+    try {
+      User user = client.readUser(new ByteArrayInputStream(Payloads.user(1)));
+      List<Post> posts = client.readPosts(new ByteArrayInputStream(Payloads.posts(1, postCount)));
+      return new UserOverview(user.getName(), user.getUsername(), user.getEmail(), posts);
+    } finally {
+      client.close();
+    }
+  }
+
+  @Benchmark
+  public ByteBuffer encodeBinary() {
+    encodeBuffer.clear();
+    UserOverviewCodec.encode(overview, encodeBuffer);
+    return encodeBuffer;
+  }
+
+  @Benchmark
+  public UserOverview decodeBinary() {
+    return UserOverviewCodec.decodeUserOverview(encoded.duplicate());
+  }
+
+  @Benchmark
+  public byte[] encodeJson() throws IOException {
+    return objectMapper.writeValueAsBytes(overview);
+  }
+
+  @Benchmark
+  public UserOverview decodeJson() throws IOException {
+    return overviewReader.readValue(json);
+  }
+}
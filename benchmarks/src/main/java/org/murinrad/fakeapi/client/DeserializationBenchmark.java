@@ -0,0 +1,88 @@
+package org.murinrad.fakeapi.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.murinrad.fakeapi.client.datamodel.Post;
+import org.murinrad.fakeapi.client.transport.OkHttp2Transport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse cost of the user and post payloads in isolation, using the parsing code of the client.
+ * The payloads are generated in the trial setup, so {@code -prof gc} reports only the allocation
+ * of the parse itself.
+ * The {@code plain} variants bind the same payloads with a default, unshared mapper and
+ * data binding, as the client did before it shared a tuned mapper, so they ignore the
+ * {@code afterburner} parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializationBenchmark {
+
+  @Param({"1", "100", "10000"})
+  public int postCount;
+
+  @Param({"false", "true"})
+  public boolean afterburner;
+
+  private static final TypeReference<List<Post>> POST_LIST = new TypeReference<List<Post>>() {
+  };
+
+  private FakeAPIClientImpl client;
+  private ObjectMapper plainMapper;
+  private byte[] userPayload;
+  private byte[] postsPayload;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    client = new FakeAPIClientImpl(FakeAPIClient.builder().apiBaseURL("http://localhost")
+        .afterburner(afterburner), new OkHttp2Transport());
+    plainMapper = new ObjectMapper();
+    userPayload = Payloads.user(1);
+    postsPayload = Payloads.posts(1, postCount);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    client.close();
+  }
+
+  @Benchmark
+  public User readUser() throws IOException {
+    return client.readUser(new ByteArrayInputStream(userPayload));
+  }
+
+  @Benchmark
+  public List<Post> readPosts() throws IOException {
+    return client.readPosts(new ByteArrayInputStream(postsPayload));
+  }
+
+  @Benchmark
+  public User readUserPlain() throws IOException {
+    return plainMapper.readValue(new ByteArrayInputStream(userPayload), User.class);
+  }
+
+  @Benchmark
+  public List<Post> readPostsPlain() throws IOException {
+    return plainMapper.readValue(new ByteArrayInputStream(postsPayload), POST_LIST);
+  }
+}
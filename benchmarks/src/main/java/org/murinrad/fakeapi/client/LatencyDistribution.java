@@ -0,0 +1,93 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency injected by the stub server before it answers a request
+ */
+interface LatencyDistribution {
+
+  /**
+   * No latency, the stub answers right away
+   */
+  LatencyDistribution NONE = () -> 0;
+
+  /**
+   * @return the latency of the next response in nanoseconds
+   */
+  long nextNanos();
+
+  static LatencyDistribution fixed(Duration latency) {
+    long nanos = latency.toNanos();
+    return () -> nanos;
+  }
+
+  static LatencyDistribution uniform(Duration min, Duration max) {
+    long minNanos = min.toNanos();
+    long maxNanos = max.toNanos();
+    if (maxNanos < minNanos) {
+      throw new IllegalArgumentException("max must not be less than min");
+    }
+    return () -> minNanos + (long) (ThreadLocalRandom.current().nextDouble() * (maxNanos - minNanos));
+  }
+
+  /**
+   * A long tailed distribution like the latencies of real services
+   *
+   * @param median the median latency
+   * @param p99 the 99th percentile latency
+   */
+  static LatencyDistribution logNormal(Duration median, Duration p99) {
+    if (p99.compareTo(median) < 0 || median.isZero()) {
+      throw new IllegalArgumentException("p99 must not be less than a positive median");
+    }
+    double mu = Math.log(median.toNanos());
+    // 2.326 is the 99th percentile of the standard normal distribution
+    double sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+    return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+  }
+
+  /**
+   * Parses {@code none}, {@code fixed:<ms>}, {@code uniform:<min ms>:<max ms>}
+   * or {@code lognormal:<median ms>:<p99 ms>}
+   *
+   * @throws IllegalArgumentException when the value is not one of those
+   */
+  static LatencyDistribution parse(String value) {
+    String[] parts = value.split(":");
+    try {
+      switch (parts[0]) {
+        case "none":
+          if (parts.length == 1) {
+            return NONE;
+          }
+          break;
+        case "fixed":
+          if (parts.length == 2) {
+            return fixed(millis(parts[1]));
+          }
+          break;
+        case "uniform":
+          if (parts.length == 3) {
+            return uniform(millis(parts[1]), millis(parts[2]));
+          }
+          break;
+        case "lognormal":
+          if (parts.length == 3) {
+            return logNormal(millis(parts[1]), millis(parts[2]));
+          }
+          break;
+        default:
+          break;
+      }
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid latency " + value, ex);
+    }
+    throw new IllegalArgumentException("Invalid latency " + value);
+  }
+
+  static Duration millis(String value) {
+    return Duration.ofNanos((long) (Double.parseDouble(value) * 1_000_000));
+  }
+}
@@ -0,0 +1,341 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.murinrad.fakeapi.client.transport.OkHttp2Transport;
+import org.murinrad.fakeapi.client.transport.OkHttp3Transport;
+
+/**
+ * Open loop load generator driving the client at a fixed rate of overviews per second.
+ * Overviews are started on schedule whether or not the earlier ones completed, so a stall shows
+ * up in the latencies instead of lowering the load. The response time is measured from when an
+ * overview was due, the service time from when it was actually started.
+ * Unless a URL is given it runs against the in-process stub server with the given latency,
+ * error rate and payload size. Run it with
+ * {@code java -cp benchmarks/target/benchmarks.jar org.murinrad.fakeapi.client.LoadTest --rps 2000}.
+ */
+public final class LoadTest {
+
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+  private String url;
+  private int rps = 1000;
+  private int durationSeconds = 30;
+  private int warmupSeconds = 5;
+  private int maxOutstanding = 1000;
+  private int users = 1;
+  private String latencySpec = "none";
+  private LatencyDistribution latency = LatencyDistribution.NONE;
+  private double errorRate;
+  private int postsPerUser = 10;
+  private String transport = "okhttp2";
+  private int maxRequests = 64;
+  private boolean virtualThreads;
+  private String histogramFile;
+
+  private final Recorder responseTimes = new Recorder(3);
+  private final Recorder serviceTimes = new Recorder(3);
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final LongAdder succeeded = new LongAdder();
+  private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+  private long dropped;
+
+  private LoadTest() {
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    LoadTest test = new LoadTest();
+    try {
+      test.parse(args);
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+      System.err.println(ex.getMessage() == null ? "Invalid arguments" : ex.getMessage());
+      printHelp();
+      System.exit(1);
+      return;
+    }
+    test.run(System.out);
+  }
+
+  private void parse(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--url":
+          url = args[++i];
+          break;
+        case "--rps":
+          rps = positive(args[++i], "rps");
+          break;
+        case "--duration":
+          durationSeconds = positive(args[++i], "duration");
+          break;
+        case "--warmup":
+          warmupSeconds = Integer.parseInt(args[++i]);
+          if (warmupSeconds < 0) {
+            throw new IllegalArgumentException("warmup must not be negative");
+          }
+          break;
+        case "--max-outstanding":
+          maxOutstanding = positive(args[++i], "max-outstanding");
+          break;
+        case "--users":
+          users = positive(args[++i], "users");
+          break;
+        case "--latency":
+          latencySpec = args[++i];
+          latency = LatencyDistribution.parse(latencySpec);
+          break;
+        case "--error-rate":
+          errorRate = Double.parseDouble(args[++i]);
+          break;
+        case "--posts":
+          postsPerUser = positive(args[++i], "posts");
+          break;
+        case "--transport":
+          transport = args[++i];
+          if (!"okhttp2".equals(transport) && !"okhttp3".equals(transport)) {
+            throw new IllegalArgumentException("Unknown transport " + transport);
+          }
+          break;
+        case "--max-requests":
+          maxRequests = positive(args[++i], "max-requests");
+          break;
+        case "--virtual-threads":
+          virtualThreads = true;
+          break;
+        case "--histogram":
+          histogramFile = args[++i];
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+  }
+
+  private static int positive(String value, String name) {
+    int parsed = Integer.parseInt(value);
+    if (parsed <= 0) {
+      throw new IllegalArgumentException(name + " must be positive");
+    }
+    return parsed;
+  }
+
+  private void run(PrintStream out) throws IOException, InterruptedException {
+    StubServer server = url == null ? new StubServer(postsPerUser, latency, errorRate) : null;
+    try (FakeAPIClient client = FakeAPIClient.builder().apiBaseURL(server != null ? server.baseUrl() : url)
+        .maxRequests(maxRequests).maxRequestsPerHost(maxRequests).maxIdleConnections(maxRequests)
+        .transport("okhttp3".equals(transport) ? OkHttp3Transport::new : OkHttp2Transport::new)
+        .executionMode(virtualThreads ? ExecutionMode.VIRTUAL_THREADS : ExecutionMode.DISPATCHER)
+        .build()) {
+      out.printf("%d overviews per second for %d s after a %d s warm-up against %s%n",
+          rps, durationSeconds, warmupSeconds, server != null ? "the stub server" : url);
+      if (server != null) {
+        out.printf("stub: %d posts per user (%d bytes), latency %s, error rate %.3f%n",
+            postsPerUser, server.postsSize(), latencySpec, errorRate);
+      }
+      generate(client, out);
+    } finally {
+      if (server != null) {
+        server.close();
+      }
+    }
+  }
+
+  private void generate(FakeAPIClient client, PrintStream out) throws IOException, InterruptedException {
+    long interval = NANOS_PER_SECOND / rps;
+    long start = System.nanoTime();
+    long measureStart = start + warmupSeconds * NANOS_PER_SECOND;
+    long end = measureStart + durationSeconds * NANOS_PER_SECOND;
+    boolean measuring = false;
+    Map<Long, Long> allocatedBefore = null;
+    long gcCountBefore = 0;
+    long gcTimeBefore = 0;
+    for (long i = 0; ; i++) {
+      long due = start + i * interval;
+      if (due - end >= 0) {
+        break;
+      }
+      if (!measuring && due - measureStart >= 0) {
+        measuring = true;
+        allocatedBefore = allocatedBytesPerThread();
+        gcCountBefore = gcCount();
+        gcTimeBefore = gcTimeMillis();
+      }
+      waitUntil(due);
+      if (outstanding.get() >= maxOutstanding) {
+        if (measuring) {
+          dropped++;
+        }
+        continue;
+      }
+      send(client, due, 1 + i % users, measuring);
+    }
+    // the overviews still in flight belong to the measurement
+    long drainDeadline = System.nanoTime() + 30 * NANOS_PER_SECOND;
+    while (outstanding.get() > 0 && System.nanoTime() - drainDeadline < 0) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    long measured = System.nanoTime() - measureStart;
+    long allocated = allocatedBefore == null ? -1 : allocatedBytes(allocatedBefore);
+    report(out, measured, allocated, gcCount() - gcCountBefore, gcTimeMillis() - gcTimeBefore);
+  }
+
+  private void send(FakeAPIClient client, long due, long id, boolean measured) {
+    outstanding.incrementAndGet();
+    long started = System.nanoTime();
+    client.retrieveUserOverviewAsync(id).whenComplete((overview, throwable) -> {
+      long now = System.nanoTime();
+      outstanding.decrementAndGet();
+      if (!measured) {
+        return;
+      }
+      responseTimes.recordValue(now - due);
+      serviceTimes.recordValue(now - started);
+      if (throwable == null) {
+        succeeded.increment();
+      } else {
+        Throwable error = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        errors.computeIfAbsent(errorKind(error), kind -> new LongAdder()).increment();
+      }
+    });
+  }
+
+  private static void waitUntil(long due) {
+    long wait;
+    while ((wait = due - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(wait);
+    }
+  }
+
+  private static String errorKind(Throwable error) {
+    if (error instanceof FakeApiClientException) {
+      return "HTTP " + ((FakeApiClientException) error).getCode();
+    }
+    return error.getClass().getSimpleName();
+  }
+
+  private void report(PrintStream out, long measuredNanos, long allocated, long gcCount, long gcTimeMillis)
+      throws IOException {
+    Histogram responses = responseTimes.getIntervalHistogram();
+    Histogram service = serviceTimes.getIntervalHistogram();
+    long completed = responses.getTotalCount();
+    double seconds = (double) measuredNanos / NANOS_PER_SECOND;
+    long failed = 0;
+    Map<String, Long> errorCounts = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> error : errors.entrySet()) {
+      errorCounts.put(error.getKey(), error.getValue().sum());
+      failed += error.getValue().sum();
+    }
+    out.printf("throughput: %.0f overviews per second, %d succeeded, %d failed, %d dropped at %d outstanding%n",
+        completed / seconds, succeeded.sum(), failed, dropped, maxOutstanding);
+    for (Map.Entry<String, Long> error : errorCounts.entrySet()) {
+      out.printf("  %s: %d%n", error.getKey(), error.getValue());
+    }
+    printLatencies(out, "response time", responses);
+    printLatencies(out, "service time ", service);
+    out.printf("allocation: %s, %d GCs taking %d ms%n",
+        allocated < 0 ? "not measurable on this JVM"
+            : String.format("%.1f MB/s, %.1f KB per overview", allocated / seconds / (1 << 20),
+                completed == 0 ? 0 : (double) allocated / completed / 1024),
+        gcCount, gcTimeMillis);
+    if (histogramFile != null) {
+      try (PrintStream file = new PrintStream(new FileOutputStream(histogramFile), false, "UTF-8")) {
+        // in microseconds, readable by the HdrHistogram plotter
+        responses.outputPercentileDistribution(file, 1000.0);
+      }
+    }
+  }
+
+  private static void printLatencies(PrintStream out, String name, Histogram histogram) {
+    StringBuilder line = new StringBuilder(name).append(" ms:");
+    for (double percentile : PERCENTILES) {
+      line.append(String.format(" p%s %.2f", percentile % 1 == 0 ? String.valueOf((int) percentile)
+          : String.valueOf(percentile), histogram.getValueAtPercentile(percentile) / 1e6));
+    }
+    line.append(String.format(" max %.2f", histogram.getMaxValue() / 1e6));
+    out.println(line);
+  }
+
+  /**
+   * @param before the allocations of the threads when the measurement started
+   * @return the bytes allocated since by the live threads, negative when the JVM does not count them.
+   *     Threads that ended in between are not counted
+   */
+  private static long allocatedBytes(Map<Long, Long> before) {
+    Map<Long, Long> after = allocatedBytesPerThread();
+    if (after == null) {
+      return -1;
+    }
+    long total = 0;
+    for (Map.Entry<Long, Long> thread : after.entrySet()) {
+      total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+    }
+    return total;
+  }
+
+  /**
+   * @return the bytes allocated so far per live thread, the stub server threads excluded,
+   *     null when the JVM does not count them
+   */
+  private static Map<Long, Long> allocatedBytesPerThread() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return null;
+    }
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+    if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+      return null;
+    }
+    Map<Long, Long> allocated = new HashMap<>();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      String name = thread.getName();
+      if (name.startsWith("stub-server") || name.startsWith("HTTP-Dispatcher")) {
+        continue;
+      }
+      long bytes = allocations.getThreadAllocatedBytes(thread.getId());
+      if (bytes > 0) {
+        allocated.put(thread.getId(), bytes);
+      }
+    }
+    return allocated;
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcTimeMillis() {
+    long time = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, gc.getCollectionTime());
+    }
+    return time;
+  }
+
+  private static void printHelp() {
+    System.err.println("Usage: LoadTest [--rps <N>] [--duration <S>] [--warmup <S>] [--max-outstanding <N>]");
+    System.err.println("  [--users <N>] [--transport okhttp2|okhttp3] [--max-requests <N>] [--virtual-threads]");
+    System.err.println("  [--histogram <FILE>] [--url <HOST_URL> | [--latency <SPEC>] [--error-rate <R>] [--posts <N>]]");
+    System.err.println("  without --url the in-process stub server answers, latency specs are none, fixed:<ms>,");
+    System.err.println("  uniform:<min ms>:<max ms> and lognormal:<median ms>:<p99 ms>");
+  }
+}
@@ -0,0 +1,37 @@
+package org.murinrad.fakeapi.client;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates response bodies shaped like the ones of the fake API
+ */
+final class Payloads {
+
+  private Payloads() {
+  }
+
+  static byte[] user(long id) {
+    String json = "{\"id\": " + id + ", \"name\": \"Leanne Graham\", \"username\": \"Bret\", "
+        + "\"email\": \"Sincere@april.biz\", \"address\": {\"street\": \"Kulas Light\", "
+        + "\"suite\": \"Apt. 556\", \"city\": \"Gwenborough\", \"zipcode\": \"92998-3874\", "
+        + "\"geo\": {\"lat\": \"-37.3159\", \"lng\": \"81.1496\"}}, \"phone\": \"1-770-736-8031 x56442\", "
+        + "\"website\": \"hildegard.org\", \"company\": {\"name\": \"Romaguera-Crona\", "
+        + "\"catchPhrase\": \"Multi-layered client-server neural-net\", \"bs\": \"harness real-time e-markets\"}}";
+    return json.getBytes(StandardCharsets.UTF_8);
+  }
+
+  static byte[] posts(long userId, int count) {
+    StringBuilder sb = new StringBuilder(count * 256 + 2).append('[');
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"userId\": ").append(userId)
+          .append(", \"id\": ").append(userId * count + i)
+          .append(", \"title\": \"sunt aut facere repellat provident occaecati excepturi optio ").append(i)
+          .append("\", \"body\": \"quia et suscipit\\nsuscipit recusandae consequuntur expedita et cum\\n")
+          .append("reprehenderit molestiae ut ut quas totam\\nnostrum rerum est autem sunt rem eveniet architecto\"}");
+    }
+    return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,133 @@
+package org.murinrad.fakeapi.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stub of the /users/{id} and /posts?userId= endpoints.
+ * Bodies are generated once up front, so serving a request costs only the copy to the socket.
+ * Responses can be delayed by a latency distribution and fail with a 503 at a given rate,
+ * delayed responses are sent from a scheduler so slow responses do not hold a server thread.
+ */
+final class StubServer implements AutoCloseable {
+
+  private static final byte[] UNAVAILABLE = "{}".getBytes(StandardCharsets.UTF_8);
+
+  static {
+    // headers and body are written separately, with Nagle's algorithm every response waits
+    // for the delayed ACK of the client. Read once, when the first server is created
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+  private final byte[] user;
+  private final byte[] posts;
+  private final LatencyDistribution latency;
+  private final double errorRate;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  StubServer(int postsPerUser) throws IOException {
+    this(postsPerUser, LatencyDistribution.NONE, 0);
+  }
+
+  /**
+   * @param postsPerUser the amount of posts per user, sets the size of the posts payload
+   * @param latency the latency added to every response
+   * @param errorRate the share of requests answered with a 503, between 0 and 1
+   */
+  StubServer(int postsPerUser, LatencyDistribution latency, double errorRate) throws IOException {
+    if (errorRate < 0 || errorRate > 1) {
+      throw new IllegalArgumentException("errorRate must be between 0 and 1");
+    }
+    this.user = Payloads.user(1);
+    this.posts = Payloads.posts(1, postsPerUser);
+    this.latency = latency;
+    this.errorRate = errorRate;
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+      Thread thread = new Thread(runnable, "stub-server");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+      Thread thread = new Thread(runnable, "stub-server-delay");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.createContext("/users/", exchange -> handle(exchange, user));
+    server.createContext("/posts", exchange -> handle(exchange, posts));
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  /**
+   * @return the size of the posts payload in bytes
+   */
+  int postsSize() {
+    return posts.length;
+  }
+
+  long getRequests() {
+    return requests.get();
+  }
+
+  long getErrors() {
+    return errors.get();
+  }
+
+  private void handle(HttpExchange exchange, byte[] body) throws IOException {
+    requests.incrementAndGet();
+    boolean fail = errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    if (fail) {
+      errors.incrementAndGet();
+    }
+    long delay = latency.nextNanos();
+    if (delay <= 0) {
+      respond(exchange, fail ? 503 : 200, fail ? UNAVAILABLE : body);
+      return;
+    }
+    scheduler.schedule(() -> {
+      try {
+        respond(exchange, fail ? 503 : 200, fail ? UNAVAILABLE : body);
+      } catch (IOException ex) {
+        // the client gave up on the request
+        exchange.close();
+      }
+    }, delay, TimeUnit.NANOSECONDS);
+  }
+
+  private static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(code, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+}
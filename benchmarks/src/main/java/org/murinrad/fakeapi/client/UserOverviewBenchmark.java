@@ -0,0 +1,68 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+import org.murinrad.fakeapi.client.transport.OkHttp2Transport;
+import org.murinrad.fakeapi.client.transport.OkHttp3Transport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end cost of an overview against the in-process stub, the network is the loopback only.
+ * Run with {@code -prof gc} to see the allocation per overview.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserOverviewBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int postsPerUser;
+
+  @Param({"okhttp2", "okhttp3"})
+  public String transport;
+
+  private StubServer server;
+  private FakeAPIClient client;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    server = new StubServer(postsPerUser);
+    client = FakeAPIClient.builder().apiBaseURL(server.baseUrl())
+        .maxRequests(64).maxRequestsPerHost(64).maxIdleConnections(64)
+        .transport("okhttp3".equals(transport) ? OkHttp3Transport::new : OkHttp2Transport::new)
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public UserOverview retrieveUserOverview() throws IOException, FakeApiClientException {
+    return client.retrieveUserOverview(1);
+  }
+
+  @Benchmark
+  public UserOverview retrieveUserOverviewAsync() throws ExecutionException, InterruptedException {
+    return client.retrieveUserOverviewAsync(1).get();
+  }
+}
@@ -0,0 +1,233 @@
+package org.murinrad.fakeapi.cli;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import org.murinrad.fakeapi.client.FakeAPIClient;
+import org.murinrad.fakeapi.client.FakeApiClientException;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+
+/**
+ * Retrieves the overviews of a list of user ids with a bounded amount of overviews in flight and
+ * writes them as newline delimited JSON, one line per id:
+ * {@code {"id":1,"overview":{...}}} or {@code {"id":1,"error":{"code":404,"message":"..."}}}.
+ * Ids are read lazily, one per line, so the list can be longer than the heap.
+ */
+final class BatchRunner {
+
+  /**
+   * Completed overviews buffered behind a slow one in ordered mode, per in-flight overview
+   */
+  private static final int REORDER_FACTOR = 4;
+  private static final int IO_ERROR = 0;
+
+  private final FakeAPIClient client;
+  private final int concurrency;
+  private final boolean ordered;
+  private final Duration timeout;
+  private final JsonGenerator out;
+  private final Semaphore permits;
+  // guarded by out
+  private final Map<String, Integer> errors = new TreeMap<>();
+  private long succeeded;
+  private long failed;
+  private volatile IOException writeFailure;
+
+  /**
+   * @param client the client to retrieve the overviews with
+   * @param concurrency the maximum amount of overviews in flight
+   * @param ordered true to write the results in the order of the ids, false as they complete
+   * @param timeout how long an overview may take before it is written as a timeout error
+   * @param out where the results are written to, it is flushed but not closed
+   * @throws IOException if the output can not be opened
+   */
+  BatchRunner(FakeAPIClient client, int concurrency, boolean ordered, Duration timeout, Writer out)
+      throws IOException {
+    this.client = client;
+    this.concurrency = concurrency;
+    this.ordered = ordered;
+    this.timeout = timeout;
+    this.permits = new Semaphore(concurrency);
+    ObjectMapper mapper = new ObjectMapper()
+        .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    this.out = mapper.getFactory().setRootValueSeparator("\n").createGenerator(out)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    this.out.setCodec(mapper);
+  }
+
+  /**
+   * Retrieves the overviews of all ids and prints a summary
+   *
+   * @param ids the ids, one per line, blank lines are skipped
+   * @param summary where the throughput and error summary is printed to
+   * @return true if every overview was retrieved
+   * @throws IOException if reading the ids or writing the results fails
+   * @throws InterruptedException if interrupted while waiting for a free slot
+   */
+  boolean run(BufferedReader ids, PrintStream summary) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    ArrayDeque<Pending> pending = new ArrayDeque<>();
+    String line;
+    while ((line = ids.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      Pending next = submit(line);
+      if (ordered) {
+        pending.add(next);
+        writeCompleted(pending, concurrency * REORDER_FACTOR);
+      }
+    }
+    if (ordered) {
+      writeCompleted(pending, 0);
+    }
+    permits.acquire(concurrency);
+    if (writeFailure != null) {
+      throw writeFailure;
+    }
+    synchronized (out) {
+      out.writeRaw('\n');
+      out.flush();
+    }
+    printSummary(summary, System.nanoTime() - start);
+    return failed == 0;
+  }
+
+  private Pending submit(String line) throws IOException, InterruptedException {
+    long id;
+    try {
+      id = Long.parseLong(line);
+    } catch (NumberFormatException ex) {
+      CompletableFuture<UserOverview> invalid = new CompletableFuture<>();
+      invalid.completeExceptionally(new IllegalArgumentException("Not a user id"));
+      Pending result = new Pending(line, null, invalid);
+      if (!ordered) {
+        write(result);
+      }
+      return result;
+    }
+    permits.acquire();
+    CompletableFuture<UserOverview> future;
+    try {
+      future = client.retrieveUserOverviewAsync(id, timeout);
+    } catch (RuntimeException ex) {
+      permits.release();
+      throw ex;
+    }
+    Pending next = new Pending(line, id, future);
+    future.whenComplete((overview, throwable) -> {
+      try {
+        if (!ordered) {
+          write(next);
+        }
+      } catch (IOException ex) {
+        writeFailure = ex;
+      } finally {
+        permits.release();
+      }
+    });
+    return next;
+  }
+
+  /**
+   * Writes the completed results at the head of the queue, waiting for the head while more
+   * than the given amount of results are queued
+   */
+  private void writeCompleted(ArrayDeque<Pending> pending, int maxQueued)
+      throws IOException, InterruptedException {
+    while (!pending.isEmpty()) {
+      Pending head = pending.peek();
+      if (!head.future.isDone() && pending.size() <= maxQueued) {
+        return;
+      }
+      try {
+        head.future.get();
+      } catch (ExecutionException | CancellationException ignored) {
+        // written as an error line
+      }
+      write(pending.poll());
+    }
+  }
+
+  private void write(Pending result) throws IOException {
+    synchronized (out) {
+      out.writeStartObject();
+      if (result.id != null) {
+        out.writeNumberField("id", result.id);
+      } else {
+        out.writeStringField("id", result.line);
+      }
+      Throwable error = null;
+      UserOverview overview = null;
+      try {
+        overview = result.future.join();
+      } catch (CompletionException ex) {
+        error = ex.getCause();
+      } catch (CancellationException ex) {
+        error = ex;
+      }
+      if (error == null) {
+        succeeded++;
+        out.writeObjectField("overview", overview);
+      } else {
+        failed++;
+        int code = error instanceof FakeApiClientException
+            ? ((FakeApiClientException) error).getCode() : IO_ERROR;
+        errors.merge(errorKind(error, code), 1, Integer::sum);
+        out.writeObjectFieldStart("error");
+        out.writeNumberField("code", code);
+        out.writeStringField("message", String.valueOf(error.getMessage()));
+        out.writeEndObject();
+      }
+      out.writeEndObject();
+    }
+  }
+
+  private static String errorKind(Throwable error, int code) {
+    if (code != IO_ERROR) {
+      return "HTTP " + code;
+    }
+    return error instanceof TimeoutException ? "timeout" : error.getClass().getSimpleName();
+  }
+
+  private void printSummary(PrintStream summary, long durationNanos) {
+    double seconds = durationNanos / 1e9;
+    long total = succeeded + failed;
+    summary.printf("Retrieved %d overviews in %.1f s, %.0f per second, %d succeeded, %d failed%n",
+        total, seconds, seconds > 0 ? total / seconds : 0, succeeded, failed);
+    for (Map.Entry<String, Integer> error : errors.entrySet()) {
+      summary.printf("  %s: %d%n", error.getKey(), error.getValue());
+    }
+  }
+
+  private static final class Pending {
+
+    private final String line;
+    private final Long id;
+    private final CompletableFuture<UserOverview> future;
+
+    /**
+     * @param id the parsed id, null when the line is not a valid id
+     */
+    private Pending(String line, Long id, CompletableFuture<UserOverview> future) {
+      this.line = line;
+      this.id = id;
+      this.future = future;
+    }
+  }
+}
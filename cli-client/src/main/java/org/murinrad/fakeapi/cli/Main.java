@@ -1,13 +1,33 @@
 package org.murinrad.fakeapi.cli;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 import org.murinrad.fakeapi.client.FakeAPIClient;
 import org.murinrad.fakeapi.client.FakeApiClientException;
 import org.murinrad.fakeapi.client.datamodel.UserOverview;
 
 public class Main {
 
-  public static void main(String[] args) throws IOException, FakeApiClientException {
+  private static final String BATCH = "--batch";
+  private static final int DEFAULT_CONCURRENCY = 64;
+  private static final long DEFAULT_TIMEOUT_SECONDS = 30;
+  private static final int OUTPUT_BUFFER = 64 * 1024;
+
+  public static void main(String[] args) throws IOException, FakeApiClientException, InterruptedException {
+    if (args.length > 0 && BATCH.equals(args[0])) {
+      if (!runBatch(args)) {
+        System.exit(1);
+      }
+      return;
+    }
     if (args.length != 2) {
       printHelp();
       return;
@@ -15,8 +35,10 @@ public class Main {
     String hostURL = args[0];
     try {
       long userID = Long.parseLong(args[1]);
-      UserOverview userOverview = FakeAPIClient.Factory.create(hostURL).retrieveUserOverview(userID);
-      System.out.println(userOverview.toString());
+      try (FakeAPIClient client = FakeAPIClient.Factory.create(hostURL)) {
+        UserOverview userOverview = client.retrieveUserOverview(userID);
+        System.out.println(userOverview.toString());
+      }
     } catch (NumberFormatException ex) {
       printHelp();
     }
@@ -24,9 +46,69 @@ public class Main {
 
   }
 
+  /**
+   * @return false if the arguments are invalid or an overview could not be retrieved
+   */
+  private static boolean runBatch(String[] args) throws IOException, InterruptedException {
+    if (args.length < 2) {
+      printHelp();
+      return false;
+    }
+    String hostURL = args[1];
+    String input = null;
+    int concurrency = DEFAULT_CONCURRENCY;
+    boolean ordered = true;
+    long timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+    try {
+      for (int i = 2; i < args.length; i++) {
+        switch (args[i]) {
+          case "--input":
+            input = args[++i];
+            break;
+          case "--concurrency":
+            concurrency = Integer.parseInt(args[++i]);
+            break;
+          case "--timeout":
+            timeoutSeconds = Long.parseLong(args[++i]);
+            break;
+          case "--unordered":
+            ordered = false;
+            break;
+          default:
+            printHelp();
+            return false;
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+      printHelp();
+      return false;
+    }
+    if (concurrency < 1 || timeoutSeconds < 1) {
+      printHelp();
+      return false;
+    }
+    // every overview is a user and a posts request
+    try (FakeAPIClient client = FakeAPIClient.builder().apiBaseURL(hostURL)
+        .maxRequests(2 * concurrency).maxRequestsPerHost(2 * concurrency).build();
+        BufferedReader ids = input == null
+            ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+            : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), OUTPUT_BUFFER)) {
+      return new BatchRunner(client, concurrency, ordered, Duration.ofSeconds(timeoutSeconds), out)
+          .run(ids, System.err);
+    }
+  }
+
   private static void printHelp() {
     System.out.println("Incorrect input.");
     System.out.println("Please use the following input format foo.jar <HOST_URL> <USER_ID>");
+    System.out.println("or for many users foo.jar --batch <HOST_URL> [--input <FILE>] [--concurrency <N>] [--timeout <S>] [--unordered]");
+    System.out.println("  the user ids are read one per line from the file or the standard input,");
+    System.out.println("  the overviews are written to the standard output as newline delimited JSON,");
+    System.out.println("  in the order of the ids unless --unordered, " + DEFAULT_CONCURRENCY
+        + " overviews are retrieved at once by default,");
+    System.out.println("  an overview taking longer than the timeout, " + DEFAULT_TIMEOUT_SECONDS
+        + " s by default, is written as a timeout error");
   }
 
 }
@@ -0,0 +1,200 @@
+package org.murinrad.fakeapi.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.FakeAPIClient;
+import org.murinrad.fakeapi.client.FakeApiClientException;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+
+public class BatchRunnerTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(7);
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final StubClient client = new StubClient();
+  private final StringWriter out = new StringWriter();
+  private final ByteArrayOutputStream summary = new ByteArrayOutputStream();
+
+  @After
+  public void after() {
+    scheduler.shutdownNow();
+  }
+
+  private boolean run(String ids, int concurrency, boolean ordered) throws IOException, InterruptedException {
+    BatchRunner runner = new BatchRunner(client, concurrency, ordered, TIMEOUT, out);
+    try (PrintStream printed = new PrintStream(summary, true, "UTF-8")) {
+      return runner.run(new BufferedReader(new StringReader(ids)), printed);
+    }
+  }
+
+  private List<JsonNode> lines() throws IOException {
+    String output = out.toString();
+    Assert.assertTrue("The output should end with a newline", output.endsWith("\n"));
+    List<JsonNode> lines = new ArrayList<>();
+    for (String line : output.split("\n")) {
+      lines.add(mapper.readTree(line));
+    }
+    return lines;
+  }
+
+  private String summary() throws IOException {
+    return summary.toString("UTF-8");
+  }
+
+  @Test
+  public void testOrderedKeepsInputOrder() throws Exception {
+    client.delay(1, 200);
+    Assert.assertTrue(run("1\n2\n3\n", 4, true));
+    List<JsonNode> lines = lines();
+    Assert.assertEquals(3, lines.size());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(i + 1, lines.get(i).get("id").asLong());
+      Assert.assertEquals("user" + (i + 1), lines.get(i).get("overview").get("name").asText());
+    }
+    Assert.assertTrue(summary(), summary().startsWith("Retrieved 3 overviews"));
+    Assert.assertTrue(summary(), summary().contains("3 succeeded, 0 failed"));
+  }
+
+  @Test
+  public void testUnorderedWritesAsCompleted() throws Exception {
+    client.delay(1, 300);
+    Assert.assertTrue(run("1\n2\n", 4, false));
+    List<JsonNode> lines = lines();
+    Assert.assertEquals(2, lines.get(0).get("id").asLong());
+    Assert.assertEquals(1, lines.get(1).get("id").asLong());
+  }
+
+  @Test
+  public void testInvalidAndBlankLines() throws Exception {
+    Assert.assertFalse(run("1\n\n  \nabc\n2\n", 4, true));
+    List<JsonNode> lines = lines();
+    Assert.assertEquals(3, lines.size());
+    Assert.assertEquals("abc", lines.get(1).get("id").asText());
+    Assert.assertEquals(0, lines.get(1).get("error").get("code").asInt());
+    Assert.assertEquals("Not a user id", lines.get(1).get("error").get("message").asText());
+    Assert.assertTrue(summary(), summary().contains("2 succeeded, 1 failed"));
+    Assert.assertTrue(summary(), summary().contains("IllegalArgumentException: 1"));
+  }
+
+  @Test
+  public void testFailuresWrittenAndSummarized() throws Exception {
+    client.fail(2, new FakeApiClientException("Not Found", 404));
+    client.fail(3, new TimeoutException("No response within 7000 ms"));
+    client.fail(4, new IOException("Connection reset"));
+    Assert.assertFalse(run("1\n2\n3\n4\n", 2, false));
+    Map<Long, JsonNode> byId = new ConcurrentHashMap<>();
+    for (JsonNode line : lines()) {
+      byId.put(line.get("id").asLong(), line);
+    }
+    Assert.assertEquals(4, byId.size());
+    Assert.assertNotNull(byId.get(1L).get("overview"));
+    Assert.assertEquals(404, byId.get(2L).get("error").get("code").asInt());
+    Assert.assertEquals("Not Found", byId.get(2L).get("error").get("message").asText());
+    Assert.assertEquals(0, byId.get(3L).get("error").get("code").asInt());
+    Assert.assertTrue(summary(), summary().contains("1 succeeded, 3 failed"));
+    Assert.assertTrue(summary(), summary().contains("HTTP 404: 1"));
+    Assert.assertTrue(summary(), summary().contains("timeout: 1"));
+    Assert.assertTrue(summary(), summary().contains("IOException: 1"));
+  }
+
+  @Test
+  public void testBoundsOverviewsInFlight() throws Exception {
+    StringBuilder ids = new StringBuilder();
+    for (int id = 1; id <= 50; id++) {
+      client.delay(id, 5);
+      ids.append(id).append('\n');
+    }
+    Assert.assertTrue(run(ids.toString(), 3, true));
+    Assert.assertEquals(50, lines().size());
+    Assert.assertTrue("In flight " + client.maxInFlight.get(), client.maxInFlight.get() <= 3);
+    Assert.assertEquals(0, client.inFlight.get());
+    Assert.assertEquals(Collections.singleton(TIMEOUT), client.timeouts.keySet());
+  }
+
+  @Test
+  public void testEmptyInput() throws Exception {
+    Assert.assertTrue(run("", 2, true));
+    Assert.assertEquals("\n", out.toString());
+    Assert.assertTrue(summary(), summary().contains("0 succeeded, 0 failed"));
+  }
+
+  /**
+   * Answers overviews named after their id, right away unless delayed or failed
+   */
+  private final class StubClient implements FakeAPIClient {
+
+    private final Map<Long, Long> delays = new ConcurrentHashMap<>();
+    private final Map<Long, Throwable> failures = new ConcurrentHashMap<>();
+    private final Map<Duration, Boolean> timeouts = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    void delay(long id, long millis) {
+      delays.put(id, millis);
+    }
+
+    void fail(long id, Throwable failure) {
+      failures.put(id, failure);
+    }
+
+    @Override
+    public CompletableFuture<UserOverview> retrieveUserOverviewAsync(long id, Duration timeout) {
+      timeouts.put(timeout, Boolean.TRUE);
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      CompletableFuture<UserOverview> future = new CompletableFuture<>();
+      Runnable complete = () -> {
+        inFlight.decrementAndGet();
+        Throwable failure = failures.get(id);
+        if (failure != null) {
+          future.completeExceptionally(failure);
+        } else {
+          future.complete(new UserOverview("user" + id, "username" + id, "user" + id + "@example.com",
+              Collections.emptyList()));
+        }
+      };
+      Long delay = delays.get(id);
+      if (delay == null) {
+        complete.run();
+      } else {
+        scheduler.schedule(complete, delay, TimeUnit.MILLISECONDS);
+      }
+      return future;
+    }
+
+    @Override
+    public CompletableFuture<UserOverview> retrieveUserOverviewAsync(long id) {
+      throw new UnsupportedOperationException("The batch must set a timeout");
+    }
+
+    @Override
+    public UserOverview retrieveUserOverview(long id) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
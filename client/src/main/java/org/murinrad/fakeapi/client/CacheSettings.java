@@ -0,0 +1,55 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-process response cache.
+ * The cache holds parsed users and post lists, entries expire after the time to live
+ * and the least recently used entries are evicted once either budget is exceeded.
+ * Users and post lists are cached separately, each within its own copy of the budgets.
+ */
+public final class CacheSettings {
+
+  private final Duration timeToLive;
+  private final int maxEntries;
+  private final long maxBytes;
+
+  /**
+   * @param timeToLive how long an entry is served after it was loaded
+   * @param maxEntries the maximum amount of cached entries
+   * @param maxBytes the maximum estimated heap size of the cached entries
+   * @throws IllegalArgumentException when the time to live is negative or a budget is not positive
+   */
+  public CacheSettings(Duration timeToLive, int maxEntries, long maxBytes) {
+    if (timeToLive == null || timeToLive.isNegative()) {
+      throw new IllegalArgumentException("Time to live must not be negative");
+    }
+    if (maxEntries <= 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("Cache budgets must be positive");
+    }
+    this.timeToLive = timeToLive;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  public Duration getTimeToLive() {
+    return timeToLive;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "timeToLive: " + getTimeToLive() + ", "
+        + "maxEntries: " + getMaxEntries() + ", "
+        + "maxBytes: " + getMaxBytes()
+        + "}";
+    return sb;
+  }
+}
@@ -0,0 +1,94 @@
+package org.murinrad.fakeapi.client;
+
+/**
+ * A point in time snapshot of the response cache counters
+ */
+public final class CacheStats {
+
+  static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0);
+
+  private final long hitCount;
+  private final long missCount;
+  private final long coalescedCount;
+  private final long evictionCount;
+  private final long expirationCount;
+  private final int entryCount;
+  private final long estimatedBytes;
+
+  CacheStats(long hitCount, long missCount, long coalescedCount, long evictionCount,
+      long expirationCount, int entryCount, long estimatedBytes) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.coalescedCount = coalescedCount;
+    this.evictionCount = evictionCount;
+    this.expirationCount = expirationCount;
+    this.entryCount = entryCount;
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  /**
+   * Sums up the counters of two caches
+   */
+  CacheStats plus(CacheStats other) {
+    return new CacheStats(hitCount + other.hitCount, missCount + other.missCount,
+        coalescedCount + other.coalescedCount, evictionCount + other.evictionCount,
+        expirationCount + other.expirationCount, entryCount + other.entryCount,
+        estimatedBytes + other.estimatedBytes);
+  }
+
+  /**
+   * @return lookups served from the cache
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return lookups that issued a request
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return lookups that joined a request already in flight for the same key
+   */
+  public long getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  /**
+   * @return entries removed to stay within the entry or byte budget
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return entries removed because their time to live passed
+   */
+  public long getExpirationCount() {
+    return expirationCount;
+  }
+
+  public int getEntryCount() {
+    return entryCount;
+  }
+
+  public long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "hits: " + getHitCount() + ", "
+        + "misses: " + getMissCount() + ", "
+        + "coalesced: " + getCoalescedCount() + ", "
+        + "evictions: " + getEvictionCount() + ", "
+        + "expirations: " + getExpirationCount() + ", "
+        + "entries: " + getEntryCount() + ", "
+        + "estimatedBytes: " + getEstimatedBytes()
+        + "}";
+    return sb;
+  }
+}
@@ -0,0 +1,34 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.concurrent.CompletableFuture;
+import org.murinrad.fakeapi.client.transport.TransportCall;
+
+/**
+ * Future of a single transport call, cancelling the future cancels the call
+ *
+ * @param <T> the type of the parsed response
+ */
+final class CallFuture<T> extends CompletableFuture<T> {
+
+  private volatile TransportCall call;
+
+  /**
+   * Binds the call to the future, a future cancelled earlier cancels the call right away
+   */
+  void attach(TransportCall call) {
+    this.call = call;
+    if (isCancelled()) {
+      call.cancel();
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    TransportCall attached = call;
+    if (cancelled && attached != null) {
+      attached.cancel();
+    }
+    return cancelled;
+  }
+}
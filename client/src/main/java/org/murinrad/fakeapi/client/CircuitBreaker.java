@@ -0,0 +1,154 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.function.LongSupplier;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+
+/**
+ * Circuit breaker of a single endpoint, see {@link CircuitBreakerSettings}.
+ * Every request asks for a permit before it is sent and reports its outcome with the permit,
+ * so outcomes of requests started in an earlier state do not count as probes.
+ */
+final class CircuitBreaker {
+
+  enum Permit {
+    REJECTED,
+    CALL,
+    PROBE
+  }
+
+  private final Endpoint endpoint;
+  private final double failureRateThreshold;
+  private final int minimumRequests;
+  private final long openNanos;
+  private final int halfOpenProbes;
+  private final CircuitBreakerListener listener;
+  private final LongSupplier nanoTime;
+  // guarded by this
+  private final boolean[] failed;
+  private CircuitState state = CircuitState.CLOSED;
+  private int recorded;
+  private int next;
+  private int failures;
+  private long openedAt;
+  private int probesSent;
+  private int probesSucceeded;
+
+  CircuitBreaker(Endpoint endpoint, CircuitBreakerSettings settings, LongSupplier nanoTime) {
+    this.endpoint = endpoint;
+    this.failureRateThreshold = settings.getFailureRateThreshold();
+    this.minimumRequests = settings.getMinimumRequests();
+    this.openNanos = settings.getOpenDuration().toNanos();
+    this.halfOpenProbes = settings.getHalfOpenProbes();
+    this.listener = settings.getListener();
+    this.nanoTime = nanoTime;
+    this.failed = new boolean[settings.getSlidingWindowSize()];
+  }
+
+  /**
+   * @return whether the request may be sent and whether it is a probe
+   */
+  Permit tryAcquire() {
+    Permit permit;
+    boolean halfOpened = false;
+    synchronized (this) {
+      if (state == CircuitState.CLOSED) {
+        return Permit.CALL;
+      }
+      if (state == CircuitState.OPEN) {
+        if (nanoTime.getAsLong() - openedAt < openNanos) {
+          return Permit.REJECTED;
+        }
+        state = CircuitState.HALF_OPEN;
+        probesSent = 0;
+        probesSucceeded = 0;
+        halfOpened = true;
+      }
+      if (probesSent < halfOpenProbes) {
+        probesSent++;
+        permit = Permit.PROBE;
+      } else {
+        permit = Permit.REJECTED;
+      }
+    }
+    if (halfOpened) {
+      notifyListener(CircuitState.OPEN, CircuitState.HALF_OPEN);
+    }
+    return permit;
+  }
+
+  /**
+   * Records the outcome of a sent request
+   *
+   * @param permit the permit of the request
+   * @param failure whether the request failed
+   */
+  void onResult(Permit permit, boolean failure) {
+    CircuitState from;
+    CircuitState to;
+    synchronized (this) {
+      from = state;
+      if (permit == Permit.CALL && state == CircuitState.CLOSED) {
+        record(failure);
+        if (recorded >= minimumRequests && failures >= failureRateThreshold * recorded) {
+          open();
+        }
+      } else if (permit == Permit.PROBE && state == CircuitState.HALF_OPEN) {
+        if (failure) {
+          open();
+        } else if (++probesSucceeded >= halfOpenProbes) {
+          close();
+        }
+      }
+      to = state;
+    }
+    if (from != to) {
+      notifyListener(from, to);
+    }
+  }
+
+  /**
+   * Gives back the permit of a request that was not sent or was cancelled, its outcome is unknown
+   */
+  synchronized void release(Permit permit) {
+    if (permit == Permit.PROBE && state == CircuitState.HALF_OPEN && probesSent > probesSucceeded) {
+      probesSent--;
+    }
+  }
+
+  synchronized CircuitState getState() {
+    return state;
+  }
+
+  private void record(boolean failure) {
+    if (recorded == failed.length) {
+      if (failed[next]) {
+        failures--;
+      }
+    } else {
+      recorded++;
+    }
+    failed[next] = failure;
+    if (failure) {
+      failures++;
+    }
+    next = (next + 1) % failed.length;
+  }
+
+  private void open() {
+    state = CircuitState.OPEN;
+    openedAt = nanoTime.getAsLong();
+  }
+
+  private void close() {
+    state = CircuitState.CLOSED;
+    recorded = 0;
+    next = 0;
+    failures = 0;
+  }
+
+  private void notifyListener(CircuitState from, CircuitState to) {
+    if (listener != null) {
+      listener.onStateChange(endpoint, from, to);
+    }
+  }
+}
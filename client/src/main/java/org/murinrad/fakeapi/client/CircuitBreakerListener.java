@@ -0,0 +1,18 @@
+package org.murinrad.fakeapi.client;
+
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+
+/**
+ * Notified when the circuit breaker of an endpoint changes its state.
+ * Called on the thread of the request causing the transition, implementations must not block.
+ */
+@FunctionalInterface
+public interface CircuitBreakerListener {
+
+  /**
+   * @param endpoint the endpoint of the breaker
+   * @param from the previous state
+   * @param to the new state
+   */
+  void onStateChange(Endpoint endpoint, CircuitState from, CircuitState to);
+}
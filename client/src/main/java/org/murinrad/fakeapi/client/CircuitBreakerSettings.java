@@ -0,0 +1,131 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+
+/**
+ * Settings of the circuit breakers, one breaker is kept per endpoint.
+ * A breaker opens once the failure rate of the recent requests reaches the threshold,
+ * failures being transport errors and 5xx responses. After the open duration it lets
+ * a few probe requests through, it closes when all of them succeed and opens again otherwise.
+ */
+public final class CircuitBreakerSettings {
+
+  private final double failureRateThreshold;
+  private final int slidingWindowSize;
+  private final int minimumRequests;
+  private final Duration openDuration;
+  private final int halfOpenProbes;
+  private final CircuitBreakerListener listener;
+
+  private CircuitBreakerSettings(Builder builder) {
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.slidingWindowSize = builder.slidingWindowSize;
+    this.minimumRequests = builder.minimumRequests;
+    this.openDuration = builder.openDuration;
+    this.halfOpenProbes = builder.halfOpenProbes;
+    this.listener = builder.listener;
+  }
+
+  public double getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  public int getSlidingWindowSize() {
+    return slidingWindowSize;
+  }
+
+  public int getMinimumRequests() {
+    return minimumRequests;
+  }
+
+  public Duration getOpenDuration() {
+    return openDuration;
+  }
+
+  public int getHalfOpenProbes() {
+    return halfOpenProbes;
+  }
+
+  /**
+   * @return the listener of state transitions, null when there is none
+   */
+  public CircuitBreakerListener getListener() {
+    return listener;
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "failureRateThreshold: " + getFailureRateThreshold() + ", "
+        + "slidingWindowSize: " + getSlidingWindowSize() + ", "
+        + "minimumRequests: " + getMinimumRequests() + ", "
+        + "openDuration: " + getOpenDuration() + ", "
+        + "halfOpenProbes: " + getHalfOpenProbes()
+        + "}";
+    return sb;
+  }
+
+  public static final class Builder {
+
+    private double failureRateThreshold = 0.5;
+    private int slidingWindowSize = 100;
+    private int minimumRequests = 20;
+    private Duration openDuration = Duration.ofSeconds(30);
+    private int halfOpenProbes = 3;
+    private CircuitBreakerListener listener;
+
+    /**
+     * @param failureRateThreshold the failure rate opening the breaker, e.g. 0.5 for half of the requests
+     */
+    public Builder failureRateThreshold(double failureRateThreshold) {
+      if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+        throw new IllegalArgumentException("failureRateThreshold must be within (0, 1]");
+      }
+      this.failureRateThreshold = failureRateThreshold;
+      return this;
+    }
+
+    /**
+     * @param slidingWindowSize the amount of most recent requests the failure rate is computed from
+     * @param minimumRequests the amount of requests recorded before the breaker may open
+     */
+    public Builder slidingWindow(int slidingWindowSize, int minimumRequests) {
+      if (slidingWindowSize <= 0 || minimumRequests <= 0 || minimumRequests > slidingWindowSize) {
+        throw new IllegalArgumentException("Window must satisfy 0 < minimumRequests <= slidingWindowSize");
+      }
+      this.slidingWindowSize = slidingWindowSize;
+      this.minimumRequests = minimumRequests;
+      return this;
+    }
+
+    /**
+     * @param openDuration how long the breaker rejects requests before probing
+     */
+    public Builder openDuration(Duration openDuration) {
+      if (openDuration == null || openDuration.isNegative()) {
+        throw new IllegalArgumentException("openDuration must not be negative");
+      }
+      this.openDuration = openDuration;
+      return this;
+    }
+
+    /**
+     * @param halfOpenProbes the amount of probe requests sent while half open
+     */
+    public Builder halfOpenProbes(int halfOpenProbes) {
+      if (halfOpenProbes <= 0) {
+        throw new IllegalArgumentException("halfOpenProbes must be positive");
+      }
+      this.halfOpenProbes = halfOpenProbes;
+      return this;
+    }
+
+    public Builder listener(CircuitBreakerListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    public CircuitBreakerSettings build() {
+      return new CircuitBreakerSettings(this);
+    }
+  }
+}
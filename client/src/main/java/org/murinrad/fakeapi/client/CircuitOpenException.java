@@ -0,0 +1,28 @@
+package org.murinrad.fakeapi.client;
+
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of its endpoint is open.
+ * Nothing was sent to the server, the code is the one a server uses for the same condition.
+ */
+public class CircuitOpenException extends FakeApiClientException {
+
+  public static final int CODE = 503;
+
+  private final Endpoint endpoint;
+
+  public CircuitOpenException(Endpoint endpoint) {
+    super("Circuit breaker of " + endpoint.path() + " is open", CODE);
+    this.endpoint = endpoint;
+  }
+
+  public Endpoint getEndpoint() {
+    return endpoint;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Request not sent: %s", getMessage());
+  }
+}
@@ -0,0 +1,19 @@
+package org.murinrad.fakeapi.client;
+
+/**
+ * State of the circuit breaker of an endpoint
+ */
+public enum CircuitState {
+  /**
+   * Requests are sent, their outcomes are recorded
+   */
+  CLOSED,
+  /**
+   * Requests fail right away with a {@link CircuitOpenException}
+   */
+  OPEN,
+  /**
+   * A limited amount of probe requests is sent, they decide whether the circuit closes or opens again
+   */
+  HALF_OPEN
+}
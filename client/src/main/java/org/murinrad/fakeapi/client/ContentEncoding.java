@@ -0,0 +1,79 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import org.brotli.dec.BrotliInputStream;
+
+/**
+ * Response compressions the client can negotiate with the server
+ */
+public enum ContentEncoding {
+
+  GZIP("gzip"),
+
+  /**
+   * Needs org.brotli:dec on the class path
+   */
+  BROTLI("br");
+
+  private static final int BUFFER_SIZE = 8192;
+  private final String token;
+
+  ContentEncoding(String token) {
+    this.token = token;
+  }
+
+  /**
+   * @return the token of the encoding in the Accept-Encoding and Content-Encoding headers
+   */
+  public String token() {
+    return token;
+  }
+
+  /**
+   * @return true if the encoding can be decoded with the current class path
+   */
+  public boolean isAvailable() {
+    if (this != BROTLI) {
+      return true;
+    }
+    try {
+      Class.forName("org.brotli.dec.BrotliInputStream", false, ContentEncoding.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Wraps the body in a decoder of its Content-Encoding, the body is decoded while it is read
+   *
+   * @param contentEncoding the Content-Encoding header of the response, null when absent
+   * @param body the body as sent by the server
+   * @return the decoded body
+   * @throws IOException if the encoding is not supported or the stream header is invalid
+   */
+  static InputStream decode(String contentEncoding, InputStream body) throws IOException {
+    if (contentEncoding == null || contentEncoding.isEmpty() || "identity".equalsIgnoreCase(contentEncoding)) {
+      return body;
+    }
+    if (GZIP.token.equalsIgnoreCase(contentEncoding)) {
+      return new GZIPInputStream(body, BUFFER_SIZE);
+    }
+    if (BROTLI.token.equalsIgnoreCase(contentEncoding) && BROTLI.isAvailable()) {
+      return Brotli.decode(body);
+    }
+    throw new IOException("Unsupported content encoding " + contentEncoding);
+  }
+
+  /**
+   * Only loaded when brotli responses arrive, so the dependency stays optional
+   */
+  private static final class Brotli {
+
+    static InputStream decode(InputStream body) throws IOException {
+      return new BrotliInputStream(body);
+    }
+  }
+}
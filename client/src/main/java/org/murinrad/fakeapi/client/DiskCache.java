@@ -0,0 +1,248 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.murinrad.fakeapi.client.transport.TransportRequest;
+
+/**
+ * Response bodies stored in a directory together with their ETag and Last-Modified validators,
+ * so they survive restarts of the client. Requests for stored responses are sent as conditional GETs,
+ * a 304 answer serves the stored body. The parsed value of an entry is kept softly,
+ * so a 304 for an entry already parsed by this client costs no parse at all.
+ * An entry is a single file named by the hash of its key and replaced atomically.
+ * The headers of the least recently used entries are kept in memory, up to a fixed count.
+ * Keys are expected to carry the base URL, so clients of different servers may share the directory.
+ */
+final class DiskCache {
+
+  private static final int MAGIC = 0xFA4EC001;
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+  private static final int DEFAULT_MAX_ENTRIES = 4096;
+
+  private final Path directory;
+  // guarded by this, iteration order is the access order
+  private final LinkedHashMap<String, Entry> entries;
+
+  /**
+   * @param directory the directory of the entries, created when missing
+   * @throws IOException when the directory can not be created
+   */
+  DiskCache(Path directory) throws IOException {
+    this(directory, DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param directory the directory of the entries, created when missing
+   * @param maxEntries the count of entry headers kept in memory
+   * @throws IOException when the directory can not be created
+   */
+  DiskCache(Path directory, int maxEntries) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, DiskCache.Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Misses are not remembered, the file of a missing entry is looked for again on the next lookup
+   *
+   * @return the stored entry of the key or null
+   */
+  Entry lookup(String key) {
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        return entry;
+      }
+    }
+    Entry entry = readHeader(key);
+    if (entry == null) {
+      return null;
+    }
+    synchronized (this) {
+      Entry raced = entries.putIfAbsent(key, entry);
+      return raced != null ? raced : entry;
+    }
+  }
+
+  /**
+   * @return the request carrying the validators of the entry
+   */
+  static TransportRequest conditional(TransportRequest request, Entry entry) {
+    if (entry == null) {
+      return request;
+    }
+    TransportRequest.Builder builder = request.newBuilder();
+    if (!entry.etag.isEmpty()) {
+      builder.header(IF_NONE_MATCH, entry.etag);
+    }
+    if (!entry.lastModified.isEmpty()) {
+      builder.header(IF_MODIFIED_SINCE, entry.lastModified);
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return whether the request was sent with validators, so a 304 is a valid answer
+   */
+  static boolean isConditional(TransportRequest request) {
+    return request.getHeaders().containsKey(IF_NONE_MATCH) || request.getHeaders().containsKey(IF_MODIFIED_SINCE);
+  }
+
+  /**
+   * Serves a stored entry after the server confirmed it is unchanged
+   *
+   * @param entry the entry
+   * @param parser parses the stored body when the parsed value is no longer held
+   * @return the parsed value
+   * @throws EntryChangedException when the file was replaced since the lookup of the entry,
+   *     the server confirmed validators the stored body no longer has
+   */
+  @SuppressWarnings("unchecked")
+  <T> T read(Entry entry, FakeAPIClientImpl.CheckedFunction<InputStream, T> parser) throws IOException {
+    SoftReference<Object> reference = entry.value;
+    Object value = reference == null ? null : reference.get();
+    if (value != null) {
+      return (T) value;
+    }
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(entry.file))) {
+      String[] fields = readHeaderFields(in);
+      if (!fields[0].equals(entry.key) || !fields[1].equals(entry.etag) || !fields[2].equals(entry.lastModified)) {
+        synchronized (this) {
+          entries.remove(entry.key, entry);
+        }
+        throw new EntryChangedException();
+      }
+      T parsed = parser.apply(in);
+      entry.value = new SoftReference<>(parsed);
+      return parsed;
+    }
+  }
+
+  /**
+   * Stores a fresh response and parses it. Responses without validators are only parsed.
+   *
+   * @param key the key of the entry
+   * @param etag the ETag of the response or null
+   * @param lastModified the Last-Modified of the response or null
+   * @param body the body of the response
+   * @param parser parses the body
+   * @return the parsed value
+   */
+  <T> T write(String key, String etag, String lastModified, InputStream body, FakeAPIClientImpl.CheckedFunction<InputStream, T> parser)
+      throws IOException {
+    if (etag == null && lastModified == null) {
+      synchronized (this) {
+        entries.remove(key);
+      }
+      return parser.apply(body);
+    }
+    Entry entry = new Entry(key, file(key), etag == null ? "" : etag, lastModified == null ? "" : lastModified);
+    // the body is streamed to the file and parsed back from it, it is never held in memory as a whole
+    Path temp = Files.createTempFile(directory, "entry", ".tmp");
+    T parsed;
+    try {
+      try (OutputStream out = Files.newOutputStream(temp);
+          DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+        data.writeInt(MAGIC);
+        data.writeUTF(key);
+        data.writeUTF(entry.etag);
+        data.writeUTF(entry.lastModified);
+        byte[] chunk = new byte[8192];
+        for (int read; (read = body.read(chunk)) != -1; ) {
+          data.write(chunk, 0, read);
+        }
+      }
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(temp)))) {
+        readHeaderFields(in);
+        parsed = parser.apply(in);
+      }
+    } catch (IOException | RuntimeException e) {
+      // a body that does not parse is not stored
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    Files.move(temp, entry.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    entry.value = new SoftReference<>(parsed);
+    synchronized (this) {
+      entries.put(key, entry);
+    }
+    return parsed;
+  }
+
+  private Entry readHeader(String key) {
+    Path file = file(key);
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      String[] fields = readHeaderFields(in);
+      // a hash collision or a file of another version is treated as a miss
+      return fields[0].equals(key) ? new Entry(key, file, fields[1], fields[2]) : null;
+    } catch (IOException e) {
+      // missing or unreadable, the response is fetched and stored again
+      return null;
+    }
+  }
+
+  private static String[] readHeaderFields(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a cache entry");
+    }
+    return new String[] {in.readUTF(), in.readUTF(), in.readUTF()};
+  }
+
+  private Path file(String key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+      StringBuilder name = new StringBuilder(digest.length * 2 + 6);
+      for (byte b : digest) {
+        name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return directory.resolve(name.append(".entry").toString());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 is required by the Java platform", e);
+    }
+  }
+
+  static final class Entry {
+
+    private final String key;
+    private final Path file;
+    private final String etag;
+    private final String lastModified;
+    private volatile SoftReference<Object> value;
+
+    private Entry(String key, Path file, String etag, String lastModified) {
+      this.key = key;
+      this.file = file;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * The stored entry was replaced after its lookup, the response has to be fetched again without validators
+   */
+  static final class EntryChangedException extends IOException {
+
+    private EntryChangedException() {
+      super("The stored entry changed since its lookup");
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package org.murinrad.fakeapi.client;
+
+/**
+ * Where the client runs its blocking work
+ */
+public enum ExecutionMode {
+
+  /**
+   * Requests are queued on the dispatcher threads of the transport.
+   */
+  DISPATCHER,
+
+  /**
+   * Every request runs as a blocking call on its own virtual thread, so thousands of
+   * concurrent overviews do not need a platform thread each.
+   * Virtual threads need Java 21 and a jar built on Java 21, otherwise the client falls back to a cached pool
+   * of daemon platform threads.
+   */
+  VIRTUAL_THREADS
+}
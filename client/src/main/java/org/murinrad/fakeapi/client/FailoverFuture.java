@@ -0,0 +1,67 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Result of a request sent to a replica picked by the load balancer.
+ * A request failing in a way pointing at the replica is sent to another replica right away,
+ * as many times as the balancer allows. Cancelling the future cancels the running attempt.
+ *
+ * @param <T> the type of the parsed response
+ */
+final class FailoverFuture<T> extends CompletableFuture<T> {
+
+  private final LoadBalancer balancer;
+  private final Function<LoadBalancer.Replica, CompletableFuture<T>> attempt;
+  private volatile CompletableFuture<T> running;
+
+  private FailoverFuture(LoadBalancer balancer, Function<LoadBalancer.Replica, CompletableFuture<T>> attempt) {
+    this.balancer = balancer;
+    this.attempt = attempt;
+  }
+
+  /**
+   * Sends the first attempt
+   *
+   * @param balancer picks the replicas
+   * @param attempt sends the request to the given replica
+   * @return the future of the request
+   */
+  static <T> FailoverFuture<T> start(LoadBalancer balancer,
+      Function<LoadBalancer.Replica, CompletableFuture<T>> attempt) {
+    FailoverFuture<T> future = new FailoverFuture<>(balancer, attempt);
+    future.launch(null, 0);
+    return future;
+  }
+
+  private void launch(LoadBalancer.Replica failed, int failovers) {
+    LoadBalancer.Replica replica = balancer.choose(failed);
+    CompletableFuture<T> future = attempt.apply(replica);
+    running = future;
+    if (isDone()) {
+      future.cancel(true);
+    }
+    future.whenComplete((value, throwable) -> {
+      Throwable failure = throwable == null ? null : Futures.unwrap(throwable);
+      balancer.finished(replica, failure);
+      if (failure == null) {
+        complete(value);
+      } else if (!isDone() && failovers < balancer.getMaxFailovers() && LoadBalancer.isReplicaFailure(failure)) {
+        launch(replica, failovers + 1);
+      } else {
+        completeExceptionally(failure);
+      }
+    });
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    CompletableFuture<T> attached = running;
+    if (cancelled && attached != null) {
+      attached.cancel(mayInterruptIfRunning);
+    }
+    return cancelled;
+  }
+}
@@ -2,17 +2,40 @@ package org.murinrad.fakeapi.client;
 
 import com.squareup.okhttp.Dispatcher;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.murinrad.fakeapi.client.datamodel.Post;
 import org.murinrad.fakeapi.client.datamodel.UserOverview;
+import org.murinrad.fakeapi.client.metrics.ClientMetrics;
+import org.murinrad.fakeapi.client.tracing.ClientTracing;
+import org.murinrad.fakeapi.client.tracing.TraceContext;
+import org.murinrad.fakeapi.client.transport.OkHttp2Transport;
+import org.murinrad.fakeapi.client.transport.Transport;
+import org.murinrad.fakeapi.client.transport.TransportFactory;
+import org.murinrad.fakeapi.client.transport.TransportSettings;
 
 /**
  * @see Factory class for instantiation
+ * @see #builder() for a client with custom settings
  * Api client for the Fake online REST API for developers site.
  */
 public interface FakeAPIClient extends AutoCloseable {
 
   /**
    * Retrieves a User overview
+   * The user and the posts are fetched concurrently, the calling thread waits for both.
    *
    * @param id the id of the user
    * @return UserOverview, a sum of user info and posts associated to the user
@@ -27,10 +50,95 @@ public interface FakeAPIClient extends AutoCloseable {
    * Should you desire to close these threads consider using the client in a
    * try-with-resources block.
    *
+   * Cancelling the future cancels both underlying requests, their responses are not parsed.
+   * Requests joined from the response cache keep running for the other callers.
+   *
    * @param id the id of the user
+   * @return a future of UserOverview, a sum of user info and posts associated to the user,
+   *     dependent stages run on the transport threads unless an executor is given to them
+   */
+  CompletableFuture<UserOverview> retrieveUserOverviewAsync(long id);
+
+  /**
+   * Retrieves a User overview asynchronously within a deadline
+   * When the overview is not retrieved within the timeout the future fails
+   * with a {@link java.util.concurrent.TimeoutException} and both underlying requests are cancelled,
+   * releasing their dispatcher slots and connections.
+   *
+   * @param id the id of the user
+   * @param timeout the time the overview has to be retrieved in
    * @return a future of UserOverview, a sum of user info and posts associated to the user
+   * @throws IllegalArgumentException when the timeout is negative
+   * @see #retrieveUserOverviewAsync(long)
+   */
+  default CompletableFuture<UserOverview> retrieveUserOverviewAsync(long id, Duration timeout) {
+    if (timeout == null || timeout.isNegative()) {
+      throw new IllegalArgumentException("Timeout must not be negative");
+    }
+    return Timers.failAfter(retrieveUserOverviewAsync(id), timeout, TraceContext.EMPTY);
+  }
+
+  /**
+   * Retrieves the posts of a user as a lazily parsed stream
+   * Posts are parsed from the response body only as the stream is consumed, so the first post
+   * is available before the whole body arrived. The stream holds the connection until
+   * it is exhausted or closed, consider using it in a try-with-resources block.
+   * Failures while reading the body surface as {@link java.io.UncheckedIOException}.
+   *
+   * @param id the id of the user
+   * @return the stream of the posts associated to the user
+   * @throws IOException if a transport level error occurs
+   * @throws FakeApiClientException if the server returns an unexpected status
+   */
+  default Stream<Post> streamUserPosts(long id) throws IOException, FakeApiClientException {
+    return retrieveUserOverview(id).getPosts().stream();
+  }
+
+  /**
+   * Retrieves the overviews of multiple users
+   * The client keeps the amount of requests in flight capped by its concurrency settings,
+   * large batches fetch all posts with a single request.
+   *
+   * @param ids the ids of the users, duplicate ids are retrieved only once
+   * @return the user overviews keyed by user id, in the iteration order of the ids
+   * @throws IOException if a transport level error occurs
+   * @throws FakeApiClientException if the server returns an unexpected status
    */
-  Future<UserOverview> retrieveUserOverviewAsync(long id);
+  default Map<Long, UserOverview> retrieveUserOverviews(Collection<Long> ids)
+      throws IOException, FakeApiClientException {
+    return Futures.await(retrieveUserOverviewsAsync(ids));
+  }
+
+  /**
+   * Retrieves the overviews of multiple users asynchronously
+   * The future fails on the first failed request.
+   * The default implementation starts the overviews of all ids at once.
+   *
+   * @param ids the ids of the users, duplicate ids are retrieved only once
+   * @return a future of the user overviews keyed by user id, in the iteration order of the ids
+   * @see #retrieveUserOverviews(Collection)
+   */
+  default Future<Map<Long, UserOverview>> retrieveUserOverviewsAsync(Collection<Long> ids) {
+    List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+    return RequestWindow.run(distinctIds, distinctIds.size(), this::retrieveUserOverviewAsync)
+        .thenApply(overviews -> {
+          Map<Long, UserOverview> result = new LinkedHashMap<>();
+          for (int i = 0; i < distinctIds.size(); i++) {
+            result.put(distinctIds.get(i), overviews.get(i));
+          }
+          return result;
+        });
+  }
+
+  /**
+   * Returns the counters of the response cache
+   *
+   * @return a snapshot of the cache counters, all zero when the client does not cache
+   * @see Builder#cache(CacheSettings)
+   */
+  default CacheStats cacheStats() {
+    return CacheStats.EMPTY;
+  }
 
   /**
    * Closes the connection
@@ -40,6 +148,15 @@ public interface FakeAPIClient extends AutoCloseable {
   @Override
   void close();
 
+  /**
+   * Creates a builder of a FakeAPI Client
+   *
+   * @return the builder
+   */
+  static Builder builder() {
+    return new Builder();
+  }
+
   class Factory {
 
     /**
@@ -50,7 +167,22 @@ public interface FakeAPIClient extends AutoCloseable {
      * @throws IllegalArgumentException when the URL provided is invalid or empty
      */
     public static FakeAPIClient create(String apiBaseURL) {
-      return new FakeAPIClientImpl(apiBaseURL);
+      return builder().apiBaseURL(apiBaseURL).build();
+    }
+
+    /**
+     * Creates a FakeAPI Client caching parsed users and posts in memory,
+     * for transport details see OKHttp documentation.
+     *
+     * @param apiBaseURL the base URL of the API eg: http://foobar.com
+     * @param cacheSettings the time to live and size budget of the cache
+     * @return The API client
+     * @throws IllegalArgumentException when the URL provided is invalid or empty
+     * @deprecated use {@link FakeAPIClient#builder()} with {@link Builder#cache(CacheSettings)}
+     */
+    @Deprecated
+    public static FakeAPIClient create(String apiBaseURL, CacheSettings cacheSettings) {
+      return builder().apiBaseURL(apiBaseURL).cache(cacheSettings).build();
     }
 
     /**
@@ -63,10 +195,442 @@ public interface FakeAPIClient extends AutoCloseable {
      * @see Dispatcher
      * @return The API client
      * @throws IllegalArgumentException when the URL provided is invalid or empty
+     * @deprecated use {@link FakeAPIClient#builder()} with {@link Builder#maxRequests(int)}
+     *     and {@link Builder#maxRequestsPerHost(int)}
      */
+    @Deprecated
     public static FakeAPIClient create(String apiBaseURL, int maxRequest, int maxRequestsPerHost) {
-      return new FakeAPIClientImpl(apiBaseURL, maxRequestsPerHost , maxRequest);
+      return builder().apiBaseURL(apiBaseURL).maxRequests(maxRequest)
+          .maxRequestsPerHost(maxRequestsPerHost).build();
+    }
+
+    /**
+     * Creates a FakeAPI Client running its requests on the given transport,
+     * eg: an {@link org.murinrad.fakeapi.client.transport.OkHttp3Transport} multiplexing
+     * requests over HTTP/2.
+     *
+     * @param apiBaseURL the base URL of the API eg: http://foobar.com
+     * @param transport the transport, it is closed together with the client
+     * @return The API client
+     * @throws IllegalArgumentException when the URL provided is invalid or empty
+     * @deprecated use {@link FakeAPIClient#builder()} with {@link Builder#transport(Transport)}
+     */
+    @Deprecated
+    public static FakeAPIClient create(String apiBaseURL, Transport transport) {
+      return builder().apiBaseURL(apiBaseURL).transport(transport).build();
+    }
+
+  }
+
+  /**
+   * Builder of a FakeAPI Client.
+   * Unless configured otherwise the client runs on OkHttp 2 with the OkHttp defaults,
+   * for transport details see OKHttp documentation.
+   */
+  class Builder {
+
+    private List<String> apiBaseURLs = Collections.emptyList();
+    private LoadBalancerSettings loadBalancerSettings;
+    private final TransportSettings.Builder transportSettings = new TransportSettings.Builder();
+    private TransportFactory transportFactory = OkHttp2Transport::new;
+    private Transport transport;
+    private CacheSettings cacheSettings;
+    private Path diskCacheDirectory;
+    private int prewarmConnections;
+    private ExecutionMode executionMode = ExecutionMode.DISPATCHER;
+    private boolean failFast;
+    private ClientMetrics metrics = ClientMetrics.NOOP;
+    private ClientTracing tracing = ClientTracing.NOOP;
+    private LimiterSettings limiterSettings;
+    private RetryPolicy retryPolicy;
+    private HedgingPolicy hedgingPolicy;
+    private CircuitBreakerSettings circuitBreakerSettings;
+    private int titlePoolSize;
+    private boolean afterburner;
+    private ContentEncoding[] acceptedEncodings = new ContentEncoding[0];
+    private FieldProjection fieldProjection;
+
+    Builder() {
+    }
+
+    /**
+     * @param apiBaseURL the base URL of the API eg: http://foobar.com
+     */
+    public Builder apiBaseURL(String apiBaseURL) {
+      this.apiBaseURLs = Collections.singletonList(apiBaseURL);
+      return this;
+    }
+
+    /**
+     * Spreads the requests over several replicas of the API, see {@link #loadBalancer(LoadBalancerSettings)}.
+     * Replaces a base URL set earlier.
+     *
+     * @param apiBaseURLs the base URLs of the replicas eg: http://foo.com, http://bar.com
+     */
+    public Builder apiBaseURLs(List<String> apiBaseURLs) {
+      this.apiBaseURLs = new ArrayList<>(apiBaseURLs);
+      return this;
+    }
+
+    /**
+     * Configures the balancing across the replicas given by {@link #apiBaseURLs(List)},
+     * the defaults of the settings are used when not set. Ignored with a single base URL.
+     *
+     * @param settings the balancing settings
+     */
+    public Builder loadBalancer(LoadBalancerSettings settings) {
+      this.loadBalancerSettings = settings;
+      return this;
+    }
+
+    /**
+     * @param maxRequests The maximum amount of concurrent requests
+     * @see Dispatcher
+     */
+    public Builder maxRequests(int maxRequests) {
+      transportSettings.maxRequests(maxRequests);
+      return this;
+    }
+
+    /**
+     * @param maxRequestsPerHost The maximum amount of concurrent requests per host
+     * @see Dispatcher
+     */
+    public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+      transportSettings.maxRequestsPerHost(maxRequestsPerHost);
+      return this;
+    }
+
+    /**
+     * @param maxIdleConnections the amount of idle connections kept in the connection pool
+     */
+    public Builder maxIdleConnections(int maxIdleConnections) {
+      transportSettings.maxIdleConnections(maxIdleConnections);
+      return this;
+    }
+
+    /**
+     * @param keepAlive how long an idle connection is kept in the connection pool
+     */
+    public Builder keepAlive(Duration keepAlive) {
+      transportSettings.keepAlive(keepAlive);
+      return this;
+    }
+
+    public Builder connectTimeout(Duration connectTimeout) {
+      transportSettings.connectTimeout(connectTimeout);
+      return this;
+    }
+
+    public Builder readTimeout(Duration readTimeout) {
+      transportSettings.readTimeout(readTimeout);
+      return this;
+    }
+
+    /**
+     * @param executor the executor of the dispatcher running asynchronous calls,
+     *     it is shut down when the client is closed
+     */
+    public Builder dispatcherExecutor(ExecutorService executor) {
+      transportSettings.executor(executor);
+      return this;
+    }
+
+    /**
+     * @param transportFactory creates the transport from the connection settings of this builder,
+     *     eg: {@code OkHttp3Transport::new}
+     */
+    public Builder transport(TransportFactory transportFactory) {
+      this.transportFactory = transportFactory;
+      this.transport = null;
+      return this;
+    }
+
+    /**
+     * @param transport a ready transport, the connection settings of this builder do not apply to it.
+     *     It is closed together with the client.
+     */
+    public Builder transport(Transport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * @param cacheSettings the settings of the in-memory cache of parsed users and posts
+     */
+    public Builder cache(CacheSettings cacheSettings) {
+      this.cacheSettings = cacheSettings;
+      return this;
+    }
+
+    /**
+     * Stores the user and posts responses in a directory together with their ETag and Last-Modified,
+     * so a restarted client revalidates them with conditional requests instead of downloading them again.
+     * The directory is not pruned, stale entries are replaced when the server returns new data.
+     *
+     * @param directory the directory of the disk cache, created when missing, null for no disk cache
+     */
+    public Builder diskCache(Path directory) {
+      this.diskCacheDirectory = directory;
+      return this;
+    }
+
+    /**
+     * @param executionMode where the client runs its blocking work, {@link ExecutionMode#DISPATCHER}
+     *     by default
+     */
+    public Builder executionMode(ExecutionMode executionMode) {
+      this.executionMode = executionMode;
+      return this;
+    }
+
+    /**
+     * @param failFast when one of the two requests of an overview fails, cancel the other one
+     *     instead of letting it run to completion, disabled by default
+     */
+    public Builder failFast(boolean failFast) {
+      this.failFast = failFast;
+      return this;
+    }
+
+    /**
+     * Limits the requests in flight adaptively and optionally caps their rate.
+     * Requests above the limit wait in the queue of the limiter instead of the queue of the transport
+     * and fail with a {@link RequestRejectedException} when they cannot be sent in time.
+     *
+     * @param limiterSettings the limiter settings, null to rely on the transport limits only
+     */
+    public Builder limiter(LimiterSettings limiterSettings) {
+      this.limiterSettings = limiterSettings;
+      return this;
+    }
+
+    /**
+     * @param retryPolicy how failed requests are retried, null to never retry
+     */
+    public Builder retryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Sends a second request when a user or posts request is slower than most recent requests.
+     * Applies to the asynchronous requests, the overviews included.
+     *
+     * @param hedgingPolicy when to hedge, null to never hedge
+     */
+    public Builder hedging(HedgingPolicy hedgingPolicy) {
+      this.hedgingPolicy = hedgingPolicy;
+      return this;
+    }
+
+    /**
+     * Keeps a circuit breaker per endpoint. While the breaker of an endpoint is open its requests
+     * fail right away with a {@link CircuitOpenException} instead of waiting for the server.
+     *
+     * @param circuitBreakerSettings the breaker settings, null for no breakers
+     */
+    public Builder circuitBreaker(CircuitBreakerSettings circuitBreakerSettings) {
+      this.circuitBreakerSettings = circuitBreakerSettings;
+      return this;
+    }
+
+    /**
+     * @param metrics where the client records latencies, errors and body sizes of its requests,
+     *     nothing is recorded by default
+     * @see org.murinrad.fakeapi.client.metrics.MicrometerMetrics
+     */
+    public Builder metrics(ClientMetrics metrics) {
+      this.metrics = metrics == null ? ClientMetrics.NOOP : metrics;
+      return this;
+    }
+
+    /**
+     * @param tracing traces the overviews and their requests and propagates the caller context
+     *     to the completion of the futures, nothing is traced by default
+     * @see org.murinrad.fakeapi.client.tracing.OpenTelemetryTracing
+     */
+    public Builder tracing(ClientTracing tracing) {
+      this.tracing = tracing == null ? ClientTracing.NOOP : tracing;
+      return this;
+    }
+
+    /**
+     * Deduplicates post titles while parsing, so posts sharing a title, across users and calls,
+     * share one string instance. The pool is lossy and fixed in size, titles that collide in it
+     * evict each other and are then allocated as usual. Nothing is pooled by default.
+     *
+     * @param slots the amount of titles the pool holds at most, 0 to disable the pool
+     */
+    public Builder titlePool(int slots) {
+      if (slots < 0) {
+        throw new IllegalArgumentException("slots must not be negative");
+      }
+      this.titlePoolSize = slots;
+      return this;
+    }
+
+    /**
+     * Asks the server to compress responses with the given encodings, in the order of preference,
+     * and decodes the bodies while they are parsed. The metrics then see the compressed and the
+     * decoded size of every body. Without encodings the transport negotiates gzip on its own and
+     * the metrics only see decoded sizes.
+     *
+     * @param encodings the accepted encodings, none to leave the negotiation to the transport
+     * @throws IllegalStateException when an encoding can not be decoded with the current class path
+     */
+    public Builder acceptEncoding(ContentEncoding... encodings) {
+      for (ContentEncoding encoding : encodings) {
+        if (!encoding.isAvailable()) {
+          throw new IllegalStateException(encoding + " decoding is not on the class path");
+        }
+      }
+      this.acceptedEncodings = encodings.clone();
+      return this;
+    }
+
+    /**
+     * Fetches and parses only the fields the overviews need, all fields are fetched by default
+     *
+     * @param fieldProjection the field selection, null to fetch all fields
+     */
+    public Builder fieldProjection(FieldProjection fieldProjection) {
+      this.fieldProjection = fieldProjection;
+      return this;
+    }
+
+    /**
+     * Binds users with accessors generated by the Jackson Afterburner module instead of reflection.
+     * Needs the optional jackson-module-afterburner dependency. The Jackson configuration is shared
+     * by every client of the JVM either way, so its warm-up is paid once.
+     *
+     * @param enabled true to register Afterburner
+     */
+    public Builder afterburner(boolean enabled) {
+      this.afterburner = enabled;
+      return this;
+    }
+
+    /**
+     * Opens connections to the API host while the client is built, so the first burst of calls
+     * does not pay the connection setup. The build waits at most the connect timeout for them.
+     * At most max requests per host connections are opened at once, and only as many as
+     * the connection pool keeps idle survive.
+     *
+     * @param connections the amount of connections to open
+     */
+    public Builder prewarmConnections(int connections) {
+      if (connections < 0) {
+        throw new IllegalArgumentException("connections must not be negative");
+      }
+      this.prewarmConnections = connections;
+      return this;
+    }
+
+    /**
+     * @return The API client
+     * @throws IllegalArgumentException when a URL provided is invalid or none is
+     * @throws UncheckedIOException when the disk cache directory can not be created
+     * @throws IllegalStateException when Afterburner is enabled but not on the class path
+     */
+    public FakeAPIClient build() {
+      TransportSettings settings = transportSettings.build();
+      Transport clientTransport = transport != null ? transport : transportFactory.create(settings);
+      FakeAPIClientImpl client;
+      try {
+        client = new FakeAPIClientImpl(this, clientTransport);
+      } catch (RuntimeException ex) {
+        clientTransport.close();
+        throw ex;
+      }
+      if (prewarmConnections > 0) {
+        client.prewarm(prewarmConnections, settings.getConnectTimeout());
+      }
+      return client;
+    }
+
+    List<String> getApiBaseURLs() {
+      return apiBaseURLs;
+    }
+
+    LoadBalancerSettings getLoadBalancerSettings() {
+      return loadBalancerSettings != null ? loadBalancerSettings : new LoadBalancerSettings.Builder().build();
+    }
+
+    CacheSettings getCacheSettings() {
+      return cacheSettings;
     }
 
+    DiskCache getDiskCache() {
+      if (diskCacheDirectory == null) {
+        return null;
+      }
+      try {
+        return new DiskCache(diskCacheDirectory);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Disk cache directory " + diskCacheDirectory + " is not usable", e);
+      }
+    }
+
+    ExecutionMode getExecutionMode() {
+      return executionMode;
+    }
+
+    boolean isFailFast() {
+      return failFast;
+    }
+
+    ClientMetrics getMetrics() {
+      return metrics;
+    }
+
+    ClientTracing getTracing() {
+      return tracing;
+    }
+
+    LimiterSettings getLimiterSettings() {
+      return limiterSettings;
+    }
+
+    RetryPolicy getRetryPolicy() {
+      return retryPolicy;
+    }
+
+    HedgingPolicy getHedgingPolicy() {
+      return hedgingPolicy;
+    }
+
+    CircuitBreakerSettings getCircuitBreakerSettings() {
+      return circuitBreakerSettings;
+    }
+
+    int getTitlePoolSize() {
+      return titlePoolSize;
+    }
+
+    boolean isAfterburner() {
+      return afterburner;
+    }
+
+    FieldProjection getFieldProjection() {
+      return fieldProjection;
+    }
+
+    /**
+     * @return the Accept-Encoding header value or null when the transport negotiates
+     */
+    String getAcceptEncoding() {
+      if (acceptedEncodings.length == 0) {
+        return null;
+      }
+      StringBuilder header = new StringBuilder();
+      for (ContentEncoding encoding : acceptedEncodings) {
+        if (header.length() > 0) {
+          header.append(", ");
+        }
+        header.append(encoding.token());
+      }
+      return header.toString();
+    }
   }
 }
@@ -1,20 +1,43 @@
 package org.murinrad.fakeapi.client;
 
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.squareup.okhttp.Call;
-import com.squareup.okhttp.Callback;
-import com.squareup.okhttp.Dispatcher;
-import com.squareup.okhttp.OkHttpClient;
-import com.squareup.okhttp.Request;
-import com.squareup.okhttp.Response;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 import org.apache.commons.validator.routines.UrlValidator;
+import org.murinrad.fakeapi.client.datamodel.Post;
 import org.murinrad.fakeapi.client.datamodel.UserOverview;
+import org.murinrad.fakeapi.client.metrics.ClientMetrics;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+import org.murinrad.fakeapi.client.tracing.ClientTracing;
+import org.murinrad.fakeapi.client.tracing.TraceContext;
+import org.murinrad.fakeapi.client.tracing.TraceScope;
+import org.murinrad.fakeapi.client.tracing.TraceSpan;
+import org.murinrad.fakeapi.client.transport.OkHttp2Transport;
+import org.murinrad.fakeapi.client.transport.Transport;
+import org.murinrad.fakeapi.client.transport.TransportCall;
+import org.murinrad.fakeapi.client.transport.TransportCallback;
+import org.murinrad.fakeapi.client.transport.TransportRequest;
+import org.murinrad.fakeapi.client.transport.TransportResponse;
 
 /**
  * Implementation of the fake API client
@@ -24,11 +47,35 @@ final class FakeAPIClientImpl implements FakeAPIClient, AutoCloseable {
   private static final String USER_ENDPOINT = "/users/";
   private static final String POSTS_ENDPOINT = "/posts/";
   private static final String POSTS_BY_USER_ENDPOINT_TEMPLATE = "/posts?userId=%s";
+  /**
+   * Batches of at least this many users fetch all posts at once instead of per user
+   */
+  static final int BULK_POSTS_THRESHOLD = 100;
+  private static final int NOT_MODIFIED = 304;
   private static final UrlValidator urlValidator = new UrlValidator(UrlValidator.ALLOW_LOCAL_URLS);
-  private final ObjectMapper objectMapper;
-  private final OkHttpClient client;
-  private final JavaType postListType;
+  private final Transport transport;
   private final String apiHost;
+  private final LoadBalancer balancer;
+  private final int maxInFlight;
+  private final ResponseCache<String, User> userCache;
+  private final ResponseCache<String, List<Post>> postsCache;
+  private final ExecutorService blockingExecutor;
+  private final boolean failFast;
+  private final ClientMetrics metrics;
+  private final ClientTracing tracing;
+  private final RequestLimiter limiter;
+  private final RetryPolicy retryPolicy;
+  private final RetryBudget retryBudget;
+  private final Map<Endpoint, LatencyTracker> latencies;
+  private final long minHedgeDelayNanos;
+  private final Map<Endpoint, CircuitBreaker> breakers;
+  private final DiskCache diskCache;
+  private final StringPool titles;
+  private final boolean afterburner;
+  private final String acceptEncoding;
+  private final String userQuery;
+  private final String postQuery;
+  private final boolean postTitles;
 
   /**
    * Constructor for the basic client
@@ -36,106 +83,907 @@ final class FakeAPIClientImpl implements FakeAPIClient, AutoCloseable {
    * @see org.murinrad.fakeapi.client.FakeAPIClient.Factory
    */
   FakeAPIClientImpl(String apiBaseURL) {
-    if (!urlValidator.isValid(apiBaseURL)) {
+    this(FakeAPIClient.builder().apiBaseURL(apiBaseURL), new OkHttp2Transport());
+  }
+
+  /**
+   * Constructor for the client configured by the builder
+   * @param options the builder holding the settings of the client
+   * @param transport the transport, closed together with the client
+   * @see org.murinrad.fakeapi.client.FakeAPIClient.Builder
+   */
+  FakeAPIClientImpl(FakeAPIClient.Builder options, Transport transport) {
+    List<String> apiBaseURLs = new ArrayList<>();
+    for (String apiBaseURL : options.getApiBaseURLs()) {
+      if (apiBaseURL == null || !urlValidator.isValid(apiBaseURL)) {
+        throw new IllegalArgumentException("Base URL parameter is invalid");
+      }
+      if (apiBaseURL.endsWith("/")) {
+        int lastSlash = apiBaseURL.lastIndexOf('/');
+        apiBaseURL = apiBaseURL.substring(0, lastSlash);
+      }
+      apiBaseURLs.add(apiBaseURL);
+    }
+    if (apiBaseURLs.isEmpty()) {
       throw new IllegalArgumentException("Base URL parameter is invalid");
     }
-    if (apiBaseURL.endsWith("/")) {
-      int lastSlash = apiBaseURL.lastIndexOf('/');
-      apiBaseURL = apiBaseURL.substring(0, lastSlash);
+    // requests are built against the first base URL and rewritten by the balancer
+    this.apiHost = apiBaseURLs.get(0);
+    balancer = apiBaseURLs.size() == 1 ? null
+        : new LoadBalancer(apiBaseURLs, options.getLoadBalancerSettings(), System::nanoTime);
+    afterburner = options.isAfterburner();
+    if (afterburner) {
+      JsonReaders.requireAfterburner();
     }
-    this.apiHost = apiBaseURL;
-    objectMapper = new ObjectMapper();
-    client = new OkHttpClient();
-    postListType = objectMapper.getTypeFactory().constructCollectionType(List.class, Post.class);
+    this.transport = transport;
+    LimiterSettings limiterSettings = options.getLimiterSettings();
+    limiter = limiterSettings == null ? null
+        : new RequestLimiter(limiterSettings, transport.maxConcurrentRequests());
+    maxInFlight = limiterSettings != null && limiterSettings.getMaxLimit() > 0
+        ? Math.min(limiterSettings.getMaxLimit(), transport.maxConcurrentRequests())
+        : transport.maxConcurrentRequests();
+    CacheSettings cacheSettings = options.getCacheSettings();
+    userCache = cacheSettings == null ? null
+        : new ResponseCache<>(cacheSettings, FakeAPIClientImpl::estimateUserSize);
+    postsCache = cacheSettings == null ? null
+        : new ResponseCache<>(cacheSettings, FakeAPIClientImpl::estimatePostsSize);
+    blockingExecutor = options.getExecutionMode() == ExecutionMode.VIRTUAL_THREADS
+        ? VirtualThreads.newThreadPerTaskExecutor() : null;
+    failFast = options.isFailFast();
+    diskCache = options.getDiskCache();
+    acceptEncoding = options.getAcceptEncoding();
+    FieldProjection projection = options.getFieldProjection();
+    userQuery = projection == null ? "" : projection.userQuery();
+    postQuery = projection == null ? "" : projection.postQuery();
+    postTitles = projection == null || projection.isPostTitles();
+    titles = options.getTitlePoolSize() > 0 ? new StringPool(options.getTitlePoolSize()) : null;
+    metrics = options.getMetrics();
+    tracing = options.getTracing();
+    CircuitBreakerSettings breakerSettings = options.getCircuitBreakerSettings();
+    if (breakerSettings == null) {
+      breakers = null;
+    } else {
+      breakers = new EnumMap<>(Endpoint.class);
+      for (Endpoint endpoint : Endpoint.values()) {
+        breakers.put(endpoint, new CircuitBreaker(endpoint, breakerSettings, System::nanoTime));
+      }
+    }
+    retryPolicy = options.getRetryPolicy();
+    HedgingPolicy hedgingPolicy = options.getHedgingPolicy();
+    RetryPolicy budgetPolicy = retryPolicy != null ? retryPolicy : new RetryPolicy.Builder().build();
+    retryBudget = retryPolicy == null && hedgingPolicy == null ? null
+        : new RetryBudget(budgetPolicy.getBudgetRatio(), budgetPolicy.getMinRetriesPerSecond(), System::nanoTime);
+    if (hedgingPolicy == null) {
+      latencies = null;
+      minHedgeDelayNanos = 0;
+    } else {
+      latencies = new EnumMap<>(Endpoint.class);
+      latencies.put(Endpoint.USER, new LatencyTracker(hedgingPolicy.getPercentile()));
+      latencies.put(Endpoint.POSTS_BY_USER, new LatencyTracker(hedgingPolicy.getPercentile()));
+      minHedgeDelayNanos = hedgingPolicy.getMinDelay().toNanos();
+    }
+    metrics.bindTransport(transport);
   }
 
   /**
-   * Constructor for the client with settings to tweak parallel calls
-   * @see org.murinrad.fakeapi.client.FakeAPIClient.Factory
+   * Opens connections to the API hosts by sending HEAD requests to their roots,
+   * the outcome of the requests is irrelevant, only the pooled connections matter.
+   *
+   * @param connections the amount of requests sent at once to every host
+   * @param timeout how long to wait for the requests
    */
-  FakeAPIClientImpl(String apiBaseURL, int maxRequestsPerHost, int maxRequests) {
-    this(apiBaseURL);
-    Dispatcher customDispatcher = new Dispatcher();
-    customDispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
-    customDispatcher.setMaxRequests(maxRequests);
-    client.setDispatcher(customDispatcher);
+  void prewarm(int connections, Duration timeout) {
+    List<String> hosts = balancer == null ? Collections.singletonList(apiHost) : balancer.getBaseUrls();
+    CountDownLatch done = new CountDownLatch(connections * hosts.size());
+    TransportCallback callback = new TransportCallback() {
+      @Override
+      public void onFailure(TransportRequest request, IOException e) {
+        done.countDown();
+      }
+
+      @Override
+      public void onResponse(TransportResponse response) {
+        closeQuietly(response);
+        done.countDown();
+      }
+    };
+    for (String host : hosts) {
+      TransportRequest request = new TransportRequest.Builder().head().url(host + "/").build();
+      for (int i = 0; i < connections; i++) {
+        transport.newCall(request).enqueue(callback);
+      }
+    }
+    try {
+      done.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   /**
    * {@inheritDoc}
+   * The user is fetched on the calling thread while the posts are requested through the dispatcher,
+   * with an in-flight limit of one both are fetched on the calling thread one after another.
+   * An interrupt cancels the posts request.
    */
   @Override
   public UserOverview retrieveUserOverview(long id) throws IOException, FakeApiClientException {
-    User userData = retrieveUser(id);
-    List<Post> userPosts = retrievePostsAssociatedWithUser(id);
-    return mapToUserOverview(userData, userPosts);
+    final TraceSpan span = tracing.startOverview(tracing.capture(), id);
+    CompletableFuture<List<Post>> userPosts = null;
+    TraceScope spanScope = span.context().makeCurrent();
+    try {
+      if (maxInFlight > 1) {
+        // only the posts take a dispatcher slot, the user is fetched on the calling thread
+        userPosts = retrievePostsAssociatedWithUserAsync(id);
+      }
+      User userData = retrieveUser(id);
+      List<Post> posts = userPosts == null ? retrievePostsAssociatedWithUser(id) : Futures.await(userPosts);
+      UserOverview overview = mapToUserOverview(userData, posts);
+      span.end(null);
+      return overview;
+    } catch (IOException | FakeApiClientException | RuntimeException ex) {
+      if (userPosts != null && !userPosts.isDone() && (failFast || ex instanceof InterruptedIOException)) {
+        userPosts.cancel(true);
+      }
+      span.end(ex);
+      throw ex;
+    } finally {
+      spanScope.close();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CompletableFuture<UserOverview> retrieveUserOverviewAsync(long id) {
+    return retrieveUserOverviewFuture(id);
   }
 
   /**
    * {@inheritDoc}
    */
   @Override
-  public Future<UserOverview> retrieveUserOverviewAsync(long id) {
-    final CompletableFuture<User> userData = retrieveUserAsync(id);
-    final CompletableFuture<List<Post>> userPosts = retrievePostsAssociatedWithUserAsync(id);
+  public CompletableFuture<UserOverview> retrieveUserOverviewAsync(long id, Duration timeout) {
+    if (timeout == null || timeout.isNegative()) {
+      throw new IllegalArgumentException("Timeout must not be negative");
+    }
+    TraceContext caller = tracing.capture();
+    return Timers.failAfter(retrieveUserOverviewFuture(id, caller), timeout, caller);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<Long, UserOverview> retrieveUserOverviews(Collection<Long> ids)
+      throws IOException, FakeApiClientException {
+    return Futures.await(retrieveUserOverviewsAsync(ids));
+  }
+
+  /**
+   * {@inheritDoc}
+   * Small batches retrieve every overview with its own pair of requests,
+   * at most half of the in-flight limit of overviews is retrieved at once.
+   * With an in-flight limit of one, overviews are retrieved one by one and the posts
+   * of an overview are requested only after its user.
+   * Batches of at least {@link #BULK_POSTS_THRESHOLD} users fetch all posts in a single request
+   * and group them by user, only the user requests are then issued per id.
+   */
+  @Override
+  public Future<Map<Long, UserOverview>> retrieveUserOverviewsAsync(Collection<Long> ids) {
+    final List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+    if (distinctIds.size() < BULK_POSTS_THRESHOLD) {
+      return RequestWindow.run(distinctIds, maxInFlight / 2, this::retrieveUserOverviewFuture)
+          .thenApply(overviews -> toOverviewMap(distinctIds, overviews));
+    }
+    final CompletableFuture<Map<Long, List<Post>>> postsByUser = retrieveAllPostsByUserAsync();
+    final CompletableFuture<List<User>> users =
+        RequestWindow.run(distinctIds, maxInFlight - 1, this::retrieveUserAsync);
+    return users.thenCombine(postsByUser, (userList, posts) -> {
+      Map<Long, UserOverview> overviews = new LinkedHashMap<>();
+      for (int i = 0; i < distinctIds.size(); i++) {
+        List<Post> userPosts = posts.getOrDefault(distinctIds.get(i), Collections.emptyList());
+        overviews.put(distinctIds.get(i), mapToUserOverview(userList.get(i), userPosts));
+      }
+      return overviews;
+    });
+  }
+
+  private CompletableFuture<UserOverview> retrieveUserOverviewFuture(long id) {
+    return retrieveUserOverviewFuture(id, tracing.capture());
+  }
+
+  /**
+   * Fetches the user and the posts concurrently, or one after another when the in-flight limit
+   * does not leave room for both. The overview fails with the first failure
+   * of either request, in fail fast mode the other request is cancelled right away.
+   * Cancelling the overview or failing it with a timeout cancels both requests.
+   * The requests are issued within the span of the overview, the overview completes within
+   * the context of the caller.
+   *
+   * @param caller the context captured from the caller
+   */
+  private CompletableFuture<UserOverview> retrieveUserOverviewFuture(long id, TraceContext caller) {
+    final TraceSpan span = tracing.startOverview(caller, id);
+    final CompletableFuture<User> userData;
+    final CompletableFuture<List<Post>> userPosts;
+    TraceScope spanScope = span.context().makeCurrent();
+    try {
+      userData = retrieveUserAsync(id);
+      userPosts = maxInFlight < 2 ? retrievePostsAfter(userData, id, span.context())
+          : retrievePostsAssociatedWithUserAsync(id);
+    } finally {
+      spanScope.close();
+    }
     final CompletableFuture<UserOverview> future = new CompletableFuture<>();
-    userData.thenAcceptBoth(userPosts, (user, posts) ->
-        future.complete(mapToUserOverview(user, posts)))
-        .exceptionally(throwable -> {
-          future.completeExceptionally(throwable);
-          return null;
+    final AtomicBoolean ended = new AtomicBoolean();
+    BiConsumer<Object, Throwable> onFailure = (ignored, throwable) -> {
+      if (throwable == null) {
+        return;
+      }
+      Throwable failure = Futures.unwrap(throwable);
+      if (ended.compareAndSet(false, true)) {
+        span.end(failure);
+      }
+      boolean failed;
+      TraceScope callerScope = caller.makeCurrent();
+      try {
+        failed = future.completeExceptionally(failure);
+      } finally {
+        callerScope.close();
+      }
+      if (failed && failFast) {
+        userData.cancel(true);
+        userPosts.cancel(true);
+      }
+    };
+    userData.thenAcceptBoth(userPosts, (user, posts) -> {
+      UserOverview overview;
+      try {
+        overview = mapToUserOverview(user, posts);
+      } catch (RuntimeException ex) {
+        // e.g. a null body, the overview must not be left incomplete
+        onFailure.accept(null, ex);
+        return;
+      }
+      if (ended.compareAndSet(false, true)) {
+        span.end(null);
+      }
+      TraceScope callerScope = caller.makeCurrent();
+      try {
+        future.complete(overview);
+      } finally {
+        callerScope.close();
+      }
+    });
+    userData.whenComplete(onFailure);
+    userPosts.whenComplete(onFailure);
+    future.whenComplete((overview, throwable) -> {
+      if (future.isCancelled() || throwable instanceof TimeoutException) {
+        if (ended.compareAndSet(false, true)) {
+          span.end(Futures.unwrap(throwable));
+        }
+        userData.cancel(true);
+        userPosts.cancel(true);
+      }
     });
     return future;
+  }
+
+  /**
+   * Requests the posts once the previous request succeeded, cancelling the returned future
+   * cancels the posts request. When the previous request fails the posts are not requested.
+   *
+   * @param context the context the posts are requested within
+   */
+  private CompletableFuture<List<Post>> retrievePostsAfter(CompletableFuture<?> previous, long id,
+      TraceContext context) {
+    final CompletableFuture<List<Post>> posts = new CompletableFuture<>();
+    previous.whenComplete((ignored, throwable) -> {
+      if (throwable != null) {
+        posts.cancel(false);
+        return;
+      }
+      if (posts.isDone()) {
+        return;
+      }
+      final CompletableFuture<List<Post>> request;
+      TraceScope contextScope = context.makeCurrent();
+      try {
+        request = retrievePostsAssociatedWithUserAsync(id);
+      } finally {
+        contextScope.close();
+      }
+      request.whenComplete((result, failure) -> {
+        if (failure != null) {
+          posts.completeExceptionally(Futures.unwrap(failure));
+        } else {
+          posts.complete(result);
+        }
+      });
+      posts.whenComplete((result, failure) -> {
+        if (posts.isCancelled()) {
+          request.cancel(true);
+        }
+      });
+    });
+    return posts;
+  }
 
+  private static Map<Long, UserOverview> toOverviewMap(List<Long> ids, List<UserOverview> overviews) {
+    Map<Long, UserOverview> result = new LinkedHashMap<>();
+    for (int i = 0; i < ids.size(); i++) {
+      result.put(ids.get(i), overviews.get(i));
+    }
+    return result;
   }
 
   User retrieveUser(long id) throws IOException, FakeApiClientException {
-    Request userRequest = new Request.Builder()
-        .url(apiHost + USER_ENDPOINT + id).build();
-    Response response = executeRequest(userRequest);
-    return objectMapper.readValue(response.body().bytes(), User.class);
+    if (userCache == null) {
+      return fetchUser(id);
+    }
+    return userCache.get(USER_ENDPOINT + id, () -> fetchUser(id));
   }
 
   CompletableFuture<User> retrieveUserAsync(long id) {
-    Request userRequest = new Request.Builder()
-        .url(apiHost + USER_ENDPOINT + id).build();
-    CompletableFuture<User> future = new CompletableFuture<>();
-    executeRequestAsync(userRequest,
-        new APIClientCallback<>(future, bytes -> objectMapper.readValue(bytes, User.class)));
-    return future;
+    if (userCache == null) {
+      return fetchUserAsync(id);
+    }
+    return userCache.getAsync(USER_ENDPOINT + id, () -> fetchUserAsync(id));
   }
 
   CompletableFuture<List<Post>> retrievePostsAssociatedWithUserAsync(long userID) {
-    Request request = new Request.Builder().get()
-        .url(apiHost + String.format(POSTS_BY_USER_ENDPOINT_TEMPLATE, userID)).build();
-    CompletableFuture<List<Post>> future = new CompletableFuture<>();
-    executeRequestAsync(request, new APIClientCallback<>(future,
-        bytes -> objectMapper.readValue(bytes, postListType)));
-    return future;
+    if (postsCache == null) {
+      return fetchPostsAssociatedWithUserAsync(userID);
+    }
+    return postsCache.getAsync(String.format(POSTS_BY_USER_ENDPOINT_TEMPLATE, userID),
+        () -> fetchPostsAssociatedWithUserAsync(userID));
   }
 
   List<Post> retrievePostsAssociatedWithUser(long userID) throws IOException, FakeApiClientException {
-    Request request = new Request.Builder().get()
-        .url(apiHost + String.format(POSTS_BY_USER_ENDPOINT_TEMPLATE, userID)).build();
-    Response response = executeRequest(request);
-    return objectMapper.readValue(response.body().bytes(), postListType);
+    if (postsCache == null) {
+      return fetchPostsAssociatedWithUser(userID);
+    }
+    return postsCache.get(String.format(POSTS_BY_USER_ENDPOINT_TEMPLATE, userID),
+        () -> fetchPostsAssociatedWithUser(userID));
+  }
+
+  /**
+   * {@inheritDoc}
+   * Posts already held by the response cache are streamed from memory.
+   */
+  @Override
+  public Stream<Post> streamUserPosts(long id) throws IOException, FakeApiClientException {
+    if (postsCache != null) {
+      List<Post> cached = postsCache.getIfPresent(String.format(POSTS_BY_USER_ENDPOINT_TEMPLATE, id));
+      if (cached != null) {
+        return cached.stream();
+      }
+    }
+    TransportResponse response = executeRequest(Endpoint.POSTS_BY_USER, postsByUserRequest(id));
+    try {
+      long start = System.nanoTime();
+      CountingInputStream wire = new CountingInputStream(response.body());
+      CountingInputStream body = decodedBody(response, wire);
+      PostReader reader = new PostReader(json().getFactory().createParser(body), titles, postTitles);
+      return reader.stream().onClose(() -> {
+        metrics.bodyRead(Endpoint.POSTS_BY_USER, wire.getCount(), body.getCount(),
+            System.nanoTime() - start);
+        closeQuietly(response);
+      });
+    } catch (IOException | RuntimeException ex) {
+      closeQuietly(response);
+      throw ex;
+    }
+  }
+
+  private TransportRequest userRequest(long id) {
+    return newRequest(apiHost + userPath(id));
+  }
+
+  private TransportRequest postsByUserRequest(long userID) {
+    return newRequest(apiHost + postsByUserPath(userID));
+  }
+
+  /**
+   * @return the path and query of the user
+   */
+  private String userPath(long id) {
+    String path = USER_ENDPOINT + id;
+    return userQuery.isEmpty() ? path : path + "?" + userQuery;
+  }
+
+  /**
+   * @return the path and query of the posts of the user
+   */
+  private String postsByUserPath(long userID) {
+    String path = String.format(POSTS_BY_USER_ENDPOINT_TEMPLATE, userID);
+    return postQuery.isEmpty() ? path : path + "&" + postQuery;
+  }
+
+  /**
+   * A GET of the URL, negotiating the accepted encodings when some are configured.
+   * Otherwise the transport negotiates and decodes gzip itself.
+   */
+  private TransportRequest newRequest(String url) {
+    TransportRequest.Builder builder = new TransportRequest.Builder().get().url(url);
+    if (acceptEncoding != null) {
+      builder.header("Accept-Encoding", acceptEncoding);
+    }
+    return builder.build();
+  }
+
+  private User fetchUser(long id) throws IOException, FakeApiClientException {
+    return fetchStored(Endpoint.USER, userRequest(id), this::readUser);
+  }
+
+  private CompletableFuture<User> fetchUserAsync(long id) {
+    return fetchStoredAsync(Endpoint.USER, userRequest(id), this::readUser);
+  }
+
+  private CompletableFuture<List<Post>> fetchPostsAssociatedWithUserAsync(long userID) {
+    return fetchStoredAsync(Endpoint.POSTS_BY_USER, postsByUserRequest(userID), this::readPosts);
+  }
+
+  private List<Post> fetchPostsAssociatedWithUser(long userID) throws IOException, FakeApiClientException {
+    return fetchStored(Endpoint.POSTS_BY_USER, postsByUserRequest(userID), this::readPosts);
+  }
+
+  /**
+   * Executes the request through the disk cache, keyed by the URL of the request.
+   * When the stored entry changed since its lookup the request is sent again without validators.
+   */
+  private <T> T fetchStored(Endpoint endpoint, TransportRequest request, CheckedFunction<InputStream, T> parser)
+      throws IOException, FakeApiClientException {
+    String key = request.getUrl();
+    DiskCache.Entry stored = lookupStored(key);
+    try {
+      return executeRequest(endpoint, DiskCache.conditional(request, stored), storing(key, stored, parser));
+    } catch (DiskCache.EntryChangedException e) {
+      return executeRequest(endpoint, request, storing(key, null, parser));
+    }
+  }
+
+  /**
+   * Asynchronous variant of {@link #fetchStored(Endpoint, TransportRequest, CheckedFunction)},
+   * cancelling the returned future cancels the request in flight
+   */
+  private <T> CompletableFuture<T> fetchStoredAsync(Endpoint endpoint, TransportRequest request,
+      CheckedFunction<InputStream, T> parser) {
+    String key = request.getUrl();
+    DiskCache.Entry stored = lookupStored(key);
+    CompletableFuture<T> conditional =
+        executeRequestAsync(endpoint, DiskCache.conditional(request, stored), storing(key, stored, parser));
+    if (stored == null) {
+      return conditional;
+    }
+    TraceContext parent = tracing.capture();
+    CompletableFuture<T> result = new CompletableFuture<>();
+    conditional.whenComplete((value, throwable) -> {
+      Throwable failure = Futures.unwrap(throwable);
+      if (!(failure instanceof DiskCache.EntryChangedException)) {
+        complete(result, value, failure);
+        return;
+      }
+      CompletableFuture<T> unconditional;
+      TraceScope parentScope = parent.makeCurrent();
+      try {
+        unconditional = executeRequestAsync(endpoint, request, storing(key, null, parser));
+      } finally {
+        parentScope.close();
+      }
+      unconditional.whenComplete((retried, retryFailure) ->
+          complete(result, retried, Futures.unwrap(retryFailure)));
+      result.whenComplete((ignored, ignoredFailure) -> {
+        if (result.isCancelled()) {
+          unconditional.cancel(true);
+        }
+      });
+    });
+    result.whenComplete((ignored, ignoredFailure) -> {
+      if (result.isCancelled()) {
+        conditional.cancel(true);
+      }
+    });
+    return result;
+  }
+
+  private static <T> void complete(CompletableFuture<T> future, T value, Throwable failure) {
+    if (failure == null) {
+      future.complete(value);
+    } else {
+      future.completeExceptionally(failure);
+    }
+  }
+
+  private DiskCache.Entry lookupStored(String key) {
+    return diskCache == null ? null : diskCache.lookup(key);
+  }
+
+  /**
+   * Reads a response through the disk cache, a 304 serves the stored entry
+   * and a fresh response replaces it. Without a disk cache it only parses the body.
+   *
+   * @param key the key of the response in the disk cache
+   * @param stored the stored entry the request was sent with validators of, or null
+   * @param parser parses the body
+   */
+  private <T> ResponseReader<T> storing(String key, DiskCache.Entry stored, CheckedFunction<InputStream, T> parser) {
+    if (diskCache == null) {
+      return (endpoint, response) -> readBody(endpoint, response, parser);
+    }
+    return (endpoint, response) -> {
+      if (response.code() == NOT_MODIFIED && stored != null) {
+        closeQuietly(response);
+        return diskCache.read(stored, parser);
+      }
+      String etag = response.header("ETag");
+      String lastModified = response.header("Last-Modified");
+      return readBody(endpoint, response, body -> diskCache.write(key, etag, lastModified, body, parser));
+    };
+  }
+
+  CompletableFuture<Map<Long, List<Post>>> retrieveAllPostsByUserAsync() {
+    String query = postQuery.isEmpty() ? "" : "?" + postQuery;
+    TransportRequest request = newRequest(apiHost + POSTS_ENDPOINT + query);
+    return executeRequestAsync(Endpoint.ALL_POSTS, request,
+        (endpoint, response) -> readBody(endpoint, response, this::readPostsByUser));
+  }
+
+  /**
+   * @return the shared Jackson configuration, resolved on use so a client that never parses
+   *     a body never builds a mapper
+   */
+  private JsonReaders json() {
+    return afterburner ? JsonReaders.afterburner() : JsonReaders.standard();
+  }
+
+  User readUser(InputStream body) throws IOException {
+    return json().getUserReader().readValue(body);
+  }
+
+  List<Post> readPosts(InputStream body) throws IOException {
+    try (PostReader reader = new PostReader(json().getFactory().createParser(body), titles, postTitles)) {
+      return reader.readAll();
+    }
   }
 
-  private Response executeRequest(Request req) throws IOException, FakeApiClientException {
-    Call call = client.newCall(req);
-    Response response = call.execute();
-    checkResponseStatus(response);
+  private Map<Long, List<Post>> readPostsByUser(InputStream body) throws IOException {
+    try (PostReader reader = new PostReader(json().getFactory().createParser(body), titles, postTitles)) {
+      return reader.readAllByUser();
+    }
+  }
+
+  private <T> T executeRequest(Endpoint endpoint, TransportRequest req,
+      ResponseReader<T> reader) throws IOException, FakeApiClientException {
+    try (TransportResponse response = executeRequest(endpoint, req)) {
+      return reader.read(endpoint, response);
+    }
+  }
+
+  /**
+   * Executes the request, retrying it as the retry policy allows
+   */
+  private TransportResponse executeRequest(Endpoint endpoint, TransportRequest req)
+      throws IOException, FakeApiClientException {
+    if (retryPolicy == null) {
+      return executeBalanced(endpoint, req);
+    }
+    retryBudget.deposit();
+    for (int retry = 1; ; retry++) {
+      try {
+        return executeBalanced(endpoint, req);
+      } catch (IOException | FakeApiClientException e) {
+        if (retry >= retryPolicy.getMaxAttempts() || !RetryPolicy.isRetryable(e) || !retryBudget.tryWithdraw()) {
+          throw e;
+        }
+        metrics.requestRetried(endpoint, retry);
+        try {
+          TimeUnit.NANOSECONDS.sleep(retryPolicy.backoffNanos(retry));
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          InterruptedIOException ex = new InterruptedIOException("Interrupted while backing off");
+          ex.addSuppressed(e);
+          throw ex;
+        }
+      }
+    }
+  }
+
+  /**
+   * Executes the request on a replica picked by the balancer, failing over to other replicas
+   */
+  private TransportResponse executeBalanced(Endpoint endpoint, TransportRequest req)
+      throws IOException, FakeApiClientException {
+    if (balancer == null) {
+      return executeAttempt(endpoint, req);
+    }
+    LoadBalancer.Replica replica = null;
+    for (int failover = 0; ; failover++) {
+      replica = balancer.choose(replica);
+      try {
+        TransportResponse response = executeAttempt(endpoint, balancer.rewrite(req, replica));
+        balancer.finished(replica, null);
+        return response;
+      } catch (IOException | FakeApiClientException | RuntimeException e) {
+        balancer.finished(replica, e);
+        if (failover >= balancer.getMaxFailovers() || !LoadBalancer.isReplicaFailure(e)) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Executes a single attempt of the request on the calling thread, its span ends with the
+   * response headers as the caller reads the body
+   */
+  private TransportResponse executeAttempt(Endpoint endpoint, TransportRequest req)
+      throws IOException, FakeApiClientException {
+    long start = System.nanoTime();
+    TraceSpan span = tracing.startRequest(tracing.capture(), endpoint, req);
+    try {
+      TransportResponse response = executeAttempt(endpoint, traced(req, span), span, start);
+      span.end(null);
+      return response;
+    } catch (IOException | FakeApiClientException | RuntimeException e) {
+      span.end(e);
+      throw e;
+    }
+  }
+
+  private TransportResponse executeAttempt(Endpoint endpoint, TransportRequest req, TraceSpan span, long start)
+      throws IOException, FakeApiClientException {
+    CircuitBreaker.Permit circuit = acquireCircuit(endpoint);
+    if (limiter != null) {
+      CompletableFuture<Void> permit = limiter.acquire();
+      try {
+        Futures.await(permit);
+      } catch (IOException | FakeApiClientException | RuntimeException e) {
+        // a permit granted as the wait was interrupted can not be cancelled any more
+        if (!permit.cancel(false) && !permit.isCompletedExceptionally()) {
+          limiter.release();
+        }
+        releaseCircuit(endpoint, circuit);
+        throw e;
+      }
+    }
+    long sent = System.nanoTime();
+    TransportResponse response;
+    try {
+      span.sent();
+      response = transport.newCall(req).execute();
+    } catch (IOException | RuntimeException e) {
+      attemptFinished(endpoint, circuit, sent, 0);
+      metrics.requestFailed(endpoint, System.nanoTime() - start);
+      throw e;
+    }
+    attemptFinished(endpoint, circuit, sent, response.code());
+    span.responseReceived(response.code());
+    recordLatency(endpoint, sent, response);
+    metrics.requestCompleted(endpoint, response.code(), System.nanoTime() - start);
+    checkResponseStatus(req, response);
     return response;
   }
 
-  private void executeRequestAsync
-      (Request req, APIClientCallback callback) {
-    Call call = client.newCall(req);
-    call.enqueue(callback);
+  /**
+   * @return the request carrying the headers propagating the span, the request itself when untraced
+   */
+  private static TransportRequest traced(TransportRequest req, TraceSpan span) {
+    if (span == TraceSpan.NOOP) {
+      return req;
+    }
+    TransportRequest.Builder builder = req.newBuilder();
+    span.injectHeaders(builder::header);
+    return builder.build();
+  }
+
+  /**
+   * Records the latency of a successful response for the hedge delay of the endpoint
+   */
+  private void recordLatency(Endpoint endpoint, long sent, TransportResponse response) {
+    if (latencies != null && response.isSuccessful()) {
+      LatencyTracker tracker = latencies.get(endpoint);
+      if (tracker != null) {
+        tracker.record(System.nanoTime() - sent);
+      }
+    }
+  }
+
+  /**
+   * @return the delay of the hedge of a request to the endpoint, negative when it is not hedged
+   */
+  private long hedgeDelayNanos(Endpoint endpoint) {
+    LatencyTracker tracker = latencies == null ? null : latencies.get(endpoint);
+    long percentile = tracker == null ? -1 : tracker.get();
+    return percentile < 0 ? -1 : Math.max(minHedgeDelayNanos, percentile);
+  }
+
+  /**
+   * Asks the circuit breaker of the endpoint whether the request may be sent
+   *
+   * @return the permit of the breaker, null when there are no breakers
+   * @throws CircuitOpenException when the breaker is open
+   */
+  private CircuitBreaker.Permit acquireCircuit(Endpoint endpoint) throws CircuitOpenException {
+    if (breakers == null) {
+      return null;
+    }
+    CircuitBreaker.Permit permit = breakers.get(endpoint).tryAcquire();
+    if (permit == CircuitBreaker.Permit.REJECTED) {
+      throw new CircuitOpenException(endpoint);
+    }
+    return permit;
+  }
+
+  /**
+   * Gives the breaker permit back for a request that was not sent or was cancelled
+   */
+  private void releaseCircuit(Endpoint endpoint, CircuitBreaker.Permit circuit) {
+    if (circuit != null) {
+      breakers.get(endpoint).release(circuit);
+    }
+  }
+
+  /**
+   * Reports the outcome of a sent request to the limiter and the circuit breaker
+   *
+   * @param sent when the request was handed to the transport
+   * @param code the status of the response, 0 when there is none
+   */
+  private void attemptFinished(Endpoint endpoint, CircuitBreaker.Permit circuit, long sent, int code) {
+    releasePermit(sent, code);
+    if (circuit != null) {
+      breakers.get(endpoint).onResult(circuit, code == 0 || code >= 500);
+    }
+  }
+
+  /**
+   * Returns the permit of a request to the limiter, if there is one
+   *
+   * @param sent when the request was handed to the transport
+   * @param code the status of the response, 0 when there is none
+   */
+  private void releasePermit(long sent, int code) {
+    if (limiter != null) {
+      limiter.release(System.nanoTime() - sent, code == 0 || code == 429 || code >= 500);
+    }
   }
 
-  private static void checkResponseStatus(Response response) throws FakeApiClientException {
-    if (!response.isSuccessful()) {
+  /**
+   * Decodes and deserializes the body, measuring its sizes and the time taken unless metrics are disabled
+   */
+  private <T> T readBody(Endpoint endpoint, TransportResponse response,
+      CheckedFunction<InputStream, T> mappingFunction) throws IOException {
+    if (metrics == ClientMetrics.NOOP) {
+      InputStream body = response.body();
+      return mappingFunction.apply(ContentEncoding.decode(response.header("Content-Encoding"), body));
+    }
+    long start = System.nanoTime();
+    CountingInputStream wire = new CountingInputStream(response.body());
+    CountingInputStream body = decodedBody(response, wire);
+    T value = mappingFunction.apply(body);
+    metrics.bodyRead(endpoint, wire.getCount(), body.getCount(), System.nanoTime() - start);
+    return value;
+  }
+
+  /**
+   * @return the decoded body counting its bytes, the wire stream itself when it is not encoded
+   */
+  private static CountingInputStream decodedBody(TransportResponse response, CountingInputStream wire)
+      throws IOException {
+    InputStream decoded = ContentEncoding.decode(response.header("Content-Encoding"), wire);
+    return decoded == wire ? wire : new CountingInputStream(decoded);
+  }
+
+  /**
+   * Executes the request asynchronously, retrying and hedging it as the policies allow.
+   * Every attempt is traced as a child of the context the request was issued in
+   */
+  private <T> CompletableFuture<T> executeRequestAsync(Endpoint endpoint, TransportRequest req,
+      ResponseReader<T> reader) {
+    TraceContext parent = tracing.capture();
+    if (retryBudget == null) {
+      return executeBalancedAsync(endpoint, req, reader, parent);
+    }
+    return RequestAttempts.start(endpoint, () -> executeBalancedAsync(endpoint, req, reader, parent),
+        retryPolicy, retryBudget, hedgeDelayNanos(endpoint), metrics);
+  }
+
+  /**
+   * Executes the request asynchronously on a replica picked by the balancer, failing over to other replicas
+   */
+  private <T> CompletableFuture<T> executeBalancedAsync(Endpoint endpoint, TransportRequest req,
+      ResponseReader<T> reader, TraceContext parent) {
+    if (balancer == null) {
+      return executeAttemptAsync(endpoint, req, reader, parent);
+    }
+    return FailoverFuture.start(balancer,
+        replica -> executeAttemptAsync(endpoint, balancer.rewrite(req, replica), reader, parent));
+  }
+
+  private <T> CallFuture<T> executeAttemptAsync(Endpoint endpoint, TransportRequest req,
+      ResponseReader<T> reader, TraceContext parent) {
+    CallFuture<T> future = new CallFuture<>();
+    TraceSpan span = tracing.startRequest(parent, endpoint, req);
+    CircuitBreaker.Permit circuit;
+    try {
+      circuit = acquireCircuit(endpoint);
+    } catch (CircuitOpenException e) {
+      span.end(e);
+      future.completeExceptionally(e);
+      return future;
+    }
+    req = traced(req, span);
+    TransportCall call = transport.newCall(req);
+    future.attach(call);
+    APIClientCallback<T> callback = new APIClientCallback<>(endpoint, req, circuit, future, reader, span);
+    if (limiter == null) {
+      dispatch(req, call, callback);
+      return future;
+    }
+    CompletableFuture<Void> permit = limiter.acquire();
+    future.whenComplete((value, throwable) -> {
+      if (future.isCancelled()) {
+        permit.cancel(false);
+      }
+    });
+    TransportRequest request = req;
+    permit.whenComplete((ignored, throwable) -> {
+      if (throwable != null) {
+        releaseCircuit(endpoint, circuit);
+        span.end(Futures.unwrap(throwable));
+        future.completeExceptionally(Futures.unwrap(throwable));
+      } else if (future.isDone()) {
+        // cancelled before the permit arrived
+        limiter.release();
+        releaseCircuit(endpoint, circuit);
+        span.end(new CancellationException());
+      } else {
+        dispatch(request, call, callback);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Hands the call to the transport or, in virtual thread mode, runs it on the blocking executor
+   */
+  private void dispatch(TransportRequest req, TransportCall call, APIClientCallback<?> callback) {
+    callback.sent = System.nanoTime();
+    callback.span.sent();
+    if (blockingExecutor == null) {
+      call.enqueue(callback);
+      return;
+    }
+    try {
+      blockingExecutor.execute(() -> {
+        TransportResponse response;
+        try {
+          response = call.execute();
+        } catch (IOException e) {
+          callback.onFailure(req, e);
+          return;
+        } catch (RuntimeException e) {
+          // e.g. a failing interceptor, the caller must not wait forever
+          callback.failed(e);
+          return;
+        }
+        callback.onResponse(response);
+      });
+    } catch (RejectedExecutionException e) {
+      callback.onFailure(req, new IOException("Client is closed", e));
+    }
+  }
+
+  /**
+   * @throws FakeApiClientException unless the response is successful or a 304 to a conditional request
+   */
+  private static void checkResponseStatus(TransportRequest request, TransportResponse response)
+      throws FakeApiClientException {
+    if (!response.isSuccessful() && !(response.code() == NOT_MODIFIED && DiskCache.isConditional(request))) {
+      closeQuietly(response);
       String message = response.message();
       if (message == null) {
         message = "<SERVER RETURNED NO MESSAGE>";
@@ -144,64 +992,156 @@ final class FakeAPIClientImpl implements FakeAPIClient, AutoCloseable {
     }
   }
 
+  private static void closeQuietly(TransportResponse response) {
+    if (response != null) {
+      try {
+        response.close();
+      } catch (IOException ignored) {
+        // the status is reported instead
+      }
+    }
+  }
+
   private static UserOverview mapToUserOverview(User userData, List<Post> userPosts) {
     return new UserOverview(
-        userData.getName(), userData.getUsername(), userData.getEmail(), userPosts.stream().map(x ->
-        new org.murinrad.fakeapi.client.datamodel.Post(x.getId(), x.getTitle())).collect(Collectors.toList())
-    );
+        userData.getName(), userData.getUsername(), userData.getEmail(), userPosts);
+  }
+
+  /**
+   * {@inheritDoc}
+   * The counters of the user and the posts caches are summed up.
+   */
+  @Override
+  public CacheStats cacheStats() {
+    return userCache == null ? CacheStats.EMPTY : userCache.stats().plus(postsCache.stats());
+  }
+
+  /**
+   * Rough estimate of the heap retained by a cached user, used for the byte budget of the cache
+   */
+  static long estimateUserSize(User user) {
+    return 64 + estimateSize(user.getName()) + estimateSize(user.getUsername())
+        + estimateSize(user.getEmail());
+  }
+
+  /**
+   * Rough estimate of the heap retained by cached posts, used for the byte budget of the cache
+   */
+  static long estimatePostsSize(List<Post> posts) {
+    long size = 32;
+    for (Post post : posts) {
+      size += 32 + estimateSize(post.getTitle());
+    }
+    return size;
+  }
+
+  private static long estimateSize(String value) {
+    return value == null ? 0 : 40 + 2L * value.length();
   }
 
   /**
-   * Closes the okhttp dispatcher. Immediately releases executor threads.
+   * Closes the transport. Immediately releases executor threads.
    * Further calls will be rejected
    * The client threads will die eventually. But this is here if the resources need
    * to be released immediately. e.g.: a CLI invocation
    */
   @Override
   public void close() {
-    if (!client.getDispatcher().getExecutorService().isShutdown()) {
-      client.getDispatcher().getExecutorService().shutdown();
+    if (blockingExecutor != null) {
+      blockingExecutor.shutdown();
     }
+    transport.close();
   }
 
-  private static class APIClientCallback<T> implements Callback {
+  private class APIClientCallback<T> implements TransportCallback {
 
+    private final Endpoint endpoint;
+    private final TransportRequest request;
+    private final CircuitBreaker.Permit circuit;
     private final CompletableFuture<T> future;
-    private final CheckedFunction<byte[], T> mappingFunction;
+    private final ResponseReader<T> reader;
+    private final TraceSpan span;
+    private final long start = System.nanoTime();
+    private long sent;
 
-    private APIClientCallback(CompletableFuture<T> future, CheckedFunction<byte[], T> mappingFunction) {
+    private APIClientCallback(Endpoint endpoint, TransportRequest request, CircuitBreaker.Permit circuit,
+        CompletableFuture<T> future, ResponseReader<T> reader, TraceSpan span) {
+      this.endpoint = endpoint;
+      this.request = request;
+      this.circuit = circuit;
       this.future = future;
-      this.mappingFunction = mappingFunction;
-
+      this.reader = reader;
+      this.span = span;
     }
 
     @Override
-    public void onFailure(Request request, IOException e) {
+    public void onFailure(TransportRequest request, IOException e) {
+      failed(e);
+    }
+
+    /**
+     * Returns the permits of the attempt and fails the request
+     */
+    void failed(Exception e) {
+      if (future.isCancelled()) {
+        if (limiter != null) {
+          limiter.release();
+        }
+        releaseCircuit(endpoint, circuit);
+      } else {
+        attemptFinished(endpoint, circuit, sent, 0);
+      }
+      metrics.requestFailed(endpoint, System.nanoTime() - start);
       parseResponse(null, e);
     }
 
     @Override
-    public void onResponse(Response response) {
+    public void onResponse(TransportResponse response) {
+      span.responseReceived(response.code());
+      attemptFinished(endpoint, circuit, sent, response.code());
+      recordLatency(endpoint, sent, response);
+      metrics.requestCompleted(endpoint, response.code(), System.nanoTime() - start);
       parseResponse(response, null);
     }
 
-    void parseResponse(Response res, Exception ex) {
-      if (ex != null) {
+    void parseResponse(TransportResponse res, Exception ex) {
+      if (future.isDone()) {
+        // cancelled or timed out, nobody waits for the body
+        closeQuietly(res);
+        span.end(new CancellationException());
+      } else if (ex != null) {
+        span.end(ex);
         future.completeExceptionally(ex);
       } else {
+        T value;
         try {
-          checkResponseStatus(res);
-          future.complete(mappingFunction.apply(res.body().bytes()));
+          checkResponseStatus(request, res);
+          try (TransportResponse response = res) {
+            value = reader.read(endpoint, response);
+          }
         } catch (Exception e) {
+          span.end(e);
           future.completeExceptionally(e);
+          return;
         }
+        span.end(null);
+        future.complete(value);
       }
     }
   }
 
-  private interface CheckedFunction<T, R> {
+  interface CheckedFunction<T, R> {
 
     R apply(T object) throws IOException;
 
   }
+
+  /**
+   * Turns a response that passed the status check into the result of a request
+   */
+  private interface ResponseReader<T> {
+
+    T read(Endpoint endpoint, TransportResponse response) throws IOException;
+
+  }
 }
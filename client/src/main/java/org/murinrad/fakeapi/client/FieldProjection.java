@@ -0,0 +1,66 @@
+package org.murinrad.fakeapi.client;
+
+/**
+ * Settings of sparse field selection. The client only ever needs the name, username and email
+ * of a user and the id and title of a post, when the server supports field selection the
+ * client asks it to leave out everything else, e.g. the address and company of users
+ * and the bodies of posts. Posts can also be fetched without titles when only their ids matter,
+ * their titles are then null.
+ */
+public final class FieldProjection {
+
+  private static final String USER_FIELDS = "id,name,username,email";
+  private static final String POST_FIELDS = "id,userId";
+  private static final String POST_TITLE_FIELD = ",title";
+
+  private final String queryParameter;
+  private final boolean postTitles;
+
+  /**
+   * @param queryParameter the query parameter the server selects fields by, e.g. {@code fields},
+   *     sent as a comma separated list. Null when the server does not support field selection,
+   *     then the fields are only skipped while parsing
+   * @param postTitles false to fetch posts without their titles
+   * @throws IllegalArgumentException when the query parameter is empty
+   */
+  public FieldProjection(String queryParameter, boolean postTitles) {
+    if (queryParameter != null && queryParameter.trim().isEmpty()) {
+      throw new IllegalArgumentException("Query parameter must not be empty");
+    }
+    this.queryParameter = queryParameter;
+    this.postTitles = postTitles;
+  }
+
+  public String getQueryParameter() {
+    return queryParameter;
+  }
+
+  public boolean isPostTitles() {
+    return postTitles;
+  }
+
+  /**
+   * @return the query selecting the user fields, without the leading separator, or an empty
+   *     string when the server does not support field selection
+   */
+  String userQuery() {
+    return queryParameter == null ? "" : queryParameter + "=" + USER_FIELDS;
+  }
+
+  /**
+   * @return the query selecting the post fields, without the leading separator, or an empty
+   *     string when the server does not support field selection
+   */
+  String postQuery() {
+    return queryParameter == null ? ""
+        : queryParameter + "=" + POST_FIELDS + (postTitles ? POST_TITLE_FIELD : "");
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "queryParameter: " + getQueryParameter() + ", "
+        + "postTitles: " + isPostTitles()
+        + "}";
+    return sb;
+  }
+}
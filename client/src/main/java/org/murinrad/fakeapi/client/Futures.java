@@ -0,0 +1,49 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers bridging the asynchronous internals and the blocking API
+ */
+final class Futures {
+
+  private Futures() {
+  }
+
+  /**
+   * Waits for the future and rethrows the failure with the checked contract of the blocking API
+   * When the waiting thread is interrupted the future is cancelled, nobody waits for it any more.
+   */
+  static <T> T await(Future<T> future) throws IOException, FakeApiClientException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the response");
+    } catch (ExecutionException ex) {
+      Throwable cause = unwrap(ex.getCause());
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof FakeApiClientException) {
+        throw (FakeApiClientException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  static Throwable unwrap(Throwable throwable) {
+    if (throwable instanceof CompletionException && throwable.getCause() != null) {
+      return throwable.getCause();
+    }
+    return throwable;
+  }
+}
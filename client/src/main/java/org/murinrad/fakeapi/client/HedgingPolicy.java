@@ -0,0 +1,48 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+
+/**
+ * Settings of hedged requests. When a user or posts request has not been answered within
+ * the given latency percentile of the recent requests of its endpoint, a second identical
+ * request is sent and the first response wins, the other request is cancelled.
+ * Hedges are paid from the retry budget, so they stop when the server is struggling.
+ */
+public final class HedgingPolicy {
+
+  private final double percentile;
+  private final Duration minDelay;
+
+  /**
+   * @param percentile the latency percentile after which the hedge is sent, e.g. 0.95
+   * @param minDelay the shortest delay of a hedge, also protects against hedging a fast endpoint
+   *     on every jitter
+   * @throws IllegalArgumentException when the percentile is not within (0, 1) or the delay is negative
+   */
+  public HedgingPolicy(double percentile, Duration minDelay) {
+    if (!(percentile > 0 && percentile < 1)) {
+      throw new IllegalArgumentException("Percentile must be within (0, 1)");
+    }
+    if (minDelay == null || minDelay.isNegative()) {
+      throw new IllegalArgumentException("Minimum delay must not be negative");
+    }
+    this.percentile = percentile;
+    this.minDelay = minDelay;
+  }
+
+  public double getPercentile() {
+    return percentile;
+  }
+
+  public Duration getMinDelay() {
+    return minDelay;
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "percentile: " + getPercentile() + ", "
+        + "minDelay: " + getMinDelay()
+        + "}";
+    return sb;
+  }
+}
@@ -0,0 +1,85 @@
+package org.murinrad.fakeapi.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+/**
+ * The Jackson configuration shared by client instances.
+ * Mappers and readers are thread-safe once configured, sharing them means the deserializers
+ * are built and warmed up once per JVM instead of once per client.
+ * Each configuration is built on its first use, so building a client stays cheap and the
+ * mapper is only paid for when a body is parsed.
+ */
+final class JsonReaders {
+
+  private final JsonFactory factory;
+  private final ObjectReader user;
+
+  private JsonReaders(ObjectMapper mapper) {
+    mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    this.factory = mapper.getFactory();
+    this.user = mapper.readerFor(User.class);
+  }
+
+  /**
+   * @return the readers using reflection
+   */
+  static JsonReaders standard() {
+    return Standard.INSTANCE;
+  }
+
+  /**
+   * @return the readers using accessors generated by the Afterburner module
+   * @see #requireAfterburner()
+   */
+  static JsonReaders afterburner() {
+    return Afterburner.INSTANCE;
+  }
+
+  /**
+   * @throws IllegalStateException when the optional Afterburner module is not on the class path
+   */
+  static void requireAfterburner() {
+    if (!isAfterburnerAvailable()) {
+      throw new IllegalStateException("jackson-module-afterburner is not on the class path");
+    }
+  }
+
+  private static boolean isAfterburnerAvailable() {
+    try {
+      Class.forName("com.fasterxml.jackson.module.afterburner.AfterburnerModule", false,
+          JsonReaders.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError ex) {
+      return false;
+    }
+  }
+
+  /**
+   * @return the factory of the parsers handed to {@link PostReader}
+   */
+  JsonFactory getFactory() {
+    return factory;
+  }
+
+  ObjectReader getUserReader() {
+    return user;
+  }
+
+  private static final class Standard {
+
+    static final JsonReaders INSTANCE = new JsonReaders(new ObjectMapper());
+  }
+
+  /**
+   * Only loaded when the optional Afterburner module is on the class path
+   */
+  private static final class Afterburner {
+
+    static final JsonReaders INSTANCE =
+        new JsonReaders(new ObjectMapper().registerModule(new AfterburnerModule()));
+  }
+}
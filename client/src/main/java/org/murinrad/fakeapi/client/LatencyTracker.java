@@ -0,0 +1,46 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.Arrays;
+
+/**
+ * Percentile of the latency of the most recent requests, recomputed every few samples
+ * from a fixed ring of samples, so recording does not allocate
+ */
+final class LatencyTracker {
+
+  private static final int WINDOW = 256;
+  private static final int RECOMPUTE_EVERY = 32;
+
+  private final double percentile;
+  private final long[] samples = new long[WINDOW];
+  private final long[] sorted = new long[WINDOW];
+  // guarded by this
+  private int count;
+  private int sinceRecompute;
+  private volatile long value = -1;
+
+  LatencyTracker(double percentile) {
+    this.percentile = percentile;
+  }
+
+  synchronized void record(long nanos) {
+    samples[count++ % WINDOW] = nanos;
+    if (count == 2 * WINDOW) {
+      count = WINDOW;
+    }
+    if (++sinceRecompute >= RECOMPUTE_EVERY) {
+      sinceRecompute = 0;
+      int size = Math.min(count, WINDOW);
+      System.arraycopy(samples, 0, sorted, 0, size);
+      Arrays.sort(sorted, 0, size);
+      value = sorted[(int) Math.min(size - 1, Math.ceil(percentile * size) - 1)];
+    }
+  }
+
+  /**
+   * @return the percentile in nanos, -1 until enough samples were recorded
+   */
+  long get() {
+    return value;
+  }
+}
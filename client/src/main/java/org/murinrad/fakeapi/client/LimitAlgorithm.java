@@ -0,0 +1,17 @@
+package org.murinrad.fakeapi.client;
+
+/**
+ * How the concurrency limiter adapts the amount of requests in flight
+ */
+public enum LimitAlgorithm {
+  /**
+   * Additive increase, multiplicative decrease. The limit grows by one per window of successful
+   * requests and is cut on every dropped request, a server error, a 429 or a transport failure.
+   */
+  AIMD,
+  /**
+   * Compares the latency of each request with the lowest latency seen recently and grows or shrinks
+   * the limit by the estimated amount of requests queued at the server, backing off before errors occur.
+   */
+  VEGAS
+}
@@ -0,0 +1,180 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+
+/**
+ * Settings of the client side concurrency limiter and the optional rate cap.
+ * The limiter starts at the initial limit and adapts it between the minimum and the maximum
+ * from the observed latency and errors. Requests above the limit wait in a bounded queue,
+ * requests that do not fit the queue or wait longer than allowed fail with a
+ * {@link RequestRejectedException}.
+ */
+public final class LimiterSettings {
+
+  private final LimitAlgorithm algorithm;
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueueSize;
+  private final Duration maxQueueWait;
+  private final double requestsPerSecond;
+  private final int burst;
+
+  private LimiterSettings(Builder builder) {
+    this.algorithm = builder.algorithm;
+    this.initialLimit = builder.initialLimit;
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.maxQueueSize = builder.maxQueueSize;
+    this.maxQueueWait = builder.maxQueueWait;
+    this.requestsPerSecond = builder.requestsPerSecond;
+    this.burst = builder.burst;
+  }
+
+  public LimitAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  public int getInitialLimit() {
+    return initialLimit;
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  /**
+   * @return the maximum limit, 0 for the concurrency of the transport
+   */
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  public Duration getMaxQueueWait() {
+    return maxQueueWait;
+  }
+
+  /**
+   * @return the rate cap, 0 when the rate is not limited
+   */
+  public double getRequestsPerSecond() {
+    return requestsPerSecond;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "algorithm: " + getAlgorithm() + ", "
+        + "initialLimit: " + getInitialLimit() + ", "
+        + "minLimit: " + getMinLimit() + ", "
+        + "maxLimit: " + getMaxLimit() + ", "
+        + "maxQueueSize: " + getMaxQueueSize() + ", "
+        + "maxQueueWait: " + getMaxQueueWait() + ", "
+        + "requestsPerSecond: " + getRequestsPerSecond() + ", "
+        + "burst: " + getBurst()
+        + "}";
+    return sb;
+  }
+
+  public static final class Builder {
+
+    private LimitAlgorithm algorithm = LimitAlgorithm.VEGAS;
+    private int initialLimit = 10;
+    private int minLimit = 1;
+    private int maxLimit;
+    private int maxQueueSize = 1000;
+    private Duration maxQueueWait = Duration.ofSeconds(1);
+    private double requestsPerSecond;
+    private int burst = 1;
+
+    /**
+     * @param algorithm how the limit adapts, {@link LimitAlgorithm#VEGAS} by default
+     */
+    public Builder algorithm(LimitAlgorithm algorithm) {
+      if (algorithm == null) {
+        throw new IllegalArgumentException("algorithm must not be null");
+      }
+      this.algorithm = algorithm;
+      return this;
+    }
+
+    public Builder initialLimit(int initialLimit) {
+      this.initialLimit = requirePositive(initialLimit, "initialLimit");
+      return this;
+    }
+
+    public Builder minLimit(int minLimit) {
+      this.minLimit = requirePositive(minLimit, "minLimit");
+      return this;
+    }
+
+    /**
+     * @param maxLimit the highest limit, by default the concurrency of the transport
+     */
+    public Builder maxLimit(int maxLimit) {
+      this.maxLimit = requirePositive(maxLimit, "maxLimit");
+      return this;
+    }
+
+    /**
+     * @param maxQueueSize the amount of requests waiting for a slot, 0 rejects every request above the limit
+     */
+    public Builder maxQueueSize(int maxQueueSize) {
+      if (maxQueueSize < 0) {
+        throw new IllegalArgumentException("maxQueueSize must not be negative");
+      }
+      this.maxQueueSize = maxQueueSize;
+      return this;
+    }
+
+    /**
+     * @param maxQueueWait how long a request waits for a slot or a rate token before it is rejected
+     */
+    public Builder maxQueueWait(Duration maxQueueWait) {
+      if (maxQueueWait == null || maxQueueWait.isNegative()) {
+        throw new IllegalArgumentException("maxQueueWait must not be negative");
+      }
+      this.maxQueueWait = maxQueueWait;
+      return this;
+    }
+
+    /**
+     * Caps the rate of requests with a token bucket
+     *
+     * @param requestsPerSecond the sustained rate
+     * @param burst the amount of requests sent at once after an idle period
+     */
+    public Builder rateLimit(double requestsPerSecond, int burst) {
+      if (!(requestsPerSecond > 0)) {
+        throw new IllegalArgumentException("requestsPerSecond must be positive");
+      }
+      this.requestsPerSecond = requestsPerSecond;
+      this.burst = requirePositive(burst, "burst");
+      return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the limits are not ordered
+     */
+    public LimiterSettings build() {
+      if (minLimit > initialLimit || (maxLimit > 0 && initialLimit > maxLimit)) {
+        throw new IllegalArgumentException("Limits must satisfy minLimit <= initialLimit <= maxLimit");
+      }
+      return new LimiterSettings(this);
+    }
+
+    private static int requirePositive(int value, String name) {
+      if (value <= 0) {
+        throw new IllegalArgumentException(name + " must be positive");
+      }
+      return value;
+    }
+  }
+}
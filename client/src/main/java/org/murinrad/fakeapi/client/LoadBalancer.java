@@ -0,0 +1,195 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import org.murinrad.fakeapi.client.transport.TransportRequest;
+
+/**
+ * Spreads the requests over the replicas of the API with the power of two choices:
+ * of two random healthy replicas the one with fewer outstanding requests is picked.
+ * Replicas failing consecutive requests are ejected for the ejection time, when every
+ * replica is ejected the one returning first is used anyway.
+ * Requests are built against the first replica and rewritten to the picked one.
+ */
+final class LoadBalancer {
+
+  private final Replica[] replicas;
+  private final String primary;
+  private final int failuresToEject;
+  private final long ejectionNanos;
+  private final int maxFailovers;
+  private final LongSupplier nanoTime;
+
+  /**
+   * @param baseUrls the base URLs of the replicas, without a trailing slash
+   * @param settings the balancing settings
+   * @param nanoTime the clock of the ejections
+   */
+  LoadBalancer(List<String> baseUrls, LoadBalancerSettings settings, LongSupplier nanoTime) {
+    this.replicas = new Replica[baseUrls.size()];
+    for (int i = 0; i < replicas.length; i++) {
+      replicas[i] = new Replica(baseUrls.get(i));
+    }
+    this.primary = baseUrls.get(0);
+    this.failuresToEject = settings.getFailuresToEject();
+    this.ejectionNanos = settings.getEjectionTime().toNanos();
+    this.maxFailovers = Math.min(settings.getMaxFailovers(), replicas.length - 1);
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Picks the replica of the next request and counts the request as outstanding on it,
+   * every pick must be followed by {@link #finished(Replica, Throwable)}
+   *
+   * @param exclude the replica the request just failed on, null for a first attempt
+   * @return the replica
+   */
+  Replica choose(Replica exclude) {
+    long now = nanoTime.getAsLong();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    Replica first = null;
+    Replica second = null;
+    int candidates = 0;
+    for (Replica replica : replicas) {
+      if (replica == exclude || replica.isEjected(now)) {
+        continue;
+      }
+      candidates++;
+      // reservoir sample of two candidates
+      if (candidates == 1) {
+        first = replica;
+      } else if (candidates == 2) {
+        second = replica;
+      } else {
+        int slot = random.nextInt(candidates);
+        if (slot == 0) {
+          first = replica;
+        } else if (slot == 1) {
+          second = replica;
+        }
+      }
+    }
+    Replica picked;
+    if (first == null) {
+      picked = returningFirst(exclude);
+    } else if (second == null || first.outstanding.get() <= second.outstanding.get()) {
+      picked = first;
+    } else {
+      picked = second;
+    }
+    picked.outstanding.incrementAndGet();
+    return picked;
+  }
+
+  private Replica returningFirst(Replica exclude) {
+    Replica picked = null;
+    for (Replica replica : replicas) {
+      if (replica != exclude && (picked == null || replica.ejectedUntil - picked.ejectedUntil < 0)) {
+        picked = replica;
+      }
+    }
+    return picked == null ? exclude : picked;
+  }
+
+  /**
+   * Ends a request picked by {@link #choose(Replica)}
+   *
+   * @param replica the replica the request was sent to
+   * @param failure the failure of the request, null when the replica answered it. Failures
+   *     not pointing at the replica, such as a cancellation, neither count nor reset its failures
+   */
+  void finished(Replica replica, Throwable failure) {
+    replica.outstanding.decrementAndGet();
+    if (failure == null) {
+      replica.failures.set(0);
+      replica.ejected = false;
+    } else if (isReplicaFailure(failure) && replica.failures.incrementAndGet() >= failuresToEject) {
+      replica.ejectedUntil = nanoTime.getAsLong() + ejectionNanos;
+      replica.ejected = true;
+    }
+  }
+
+  /**
+   * @return how many times a failed request is sent to another replica
+   */
+  int getMaxFailovers() {
+    return maxFailovers;
+  }
+
+  /**
+   * @param request a request built against the first replica
+   * @param replica the replica to send it to
+   * @return the request addressed to the replica
+   */
+  TransportRequest rewrite(TransportRequest request, Replica replica) {
+    if (replica.baseUrl.equals(primary) || !request.getUrl().startsWith(primary)) {
+      return request;
+    }
+    return request.newBuilder().url(replica.baseUrl + request.getUrl().substring(primary.length())).build();
+  }
+
+  /**
+   * @return the base URLs of all replicas
+   */
+  List<String> getBaseUrls() {
+    List<String> baseUrls = new ArrayList<>(replicas.length);
+    for (Replica replica : replicas) {
+      baseUrls.add(replica.baseUrl);
+    }
+    return baseUrls;
+  }
+
+  /**
+   * @return whether the failure hints at the replica rather than the request, these failures
+   *     count towards the ejection and are failed over. Failures raised by the client itself,
+   *     such as an open circuit or a rejection by the limiter, do not
+   */
+  static boolean isReplicaFailure(Throwable failure) {
+    if (failure instanceof RequestRejectedException || failure instanceof CircuitOpenException) {
+      return false;
+    }
+    if (failure instanceof FakeApiClientException) {
+      return ((FakeApiClientException) failure).getCode() >= 500;
+    }
+    // plain InterruptedIOExceptions stem from an interrupted caller, not from the replica
+    return failure instanceof IOException
+        && (!(failure instanceof InterruptedIOException) || failure instanceof SocketTimeoutException);
+  }
+
+  static final class Replica {
+
+    private final String baseUrl;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    // only meaningful while ejected, the clock may be negative
+    private volatile long ejectedUntil;
+    private volatile boolean ejected;
+
+    private Replica(String baseUrl) {
+      this.baseUrl = baseUrl;
+    }
+
+    String getBaseUrl() {
+      return baseUrl;
+    }
+
+    int getOutstanding() {
+      return outstanding.get();
+    }
+
+    private boolean isEjected(long now) {
+      return ejected && ejectedUntil - now > 0;
+    }
+
+    @Override
+    public String toString() {
+      return baseUrl;
+    }
+  }
+}
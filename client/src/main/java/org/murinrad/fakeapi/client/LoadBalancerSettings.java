@@ -0,0 +1,89 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+
+/**
+ * Settings of the balancing across several replicas of the API.
+ * Every request goes to the less loaded of two random replicas, measured by the requests
+ * outstanding on each. A replica failing several requests in a row, with transport errors or
+ * 5xx responses, is ejected for a while. A request failing that way is sent once more to
+ * another replica right away, all requests of the client are idempotent GETs.
+ */
+public final class LoadBalancerSettings {
+
+  private final int failuresToEject;
+  private final Duration ejectionTime;
+  private final int maxFailovers;
+
+  private LoadBalancerSettings(Builder builder) {
+    this.failuresToEject = builder.failuresToEject;
+    this.ejectionTime = builder.ejectionTime;
+    this.maxFailovers = builder.maxFailovers;
+  }
+
+  public int getFailuresToEject() {
+    return failuresToEject;
+  }
+
+  public Duration getEjectionTime() {
+    return ejectionTime;
+  }
+
+  public int getMaxFailovers() {
+    return maxFailovers;
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "failuresToEject: " + getFailuresToEject() + ", "
+        + "ejectionTime: " + getEjectionTime() + ", "
+        + "maxFailovers: " + getMaxFailovers()
+        + "}";
+    return sb;
+  }
+
+  public static final class Builder {
+
+    private int failuresToEject = 5;
+    private Duration ejectionTime = Duration.ofSeconds(30);
+    private int maxFailovers = 1;
+
+    /**
+     * @param failuresToEject the amount of consecutive failures ejecting a replica
+     */
+    public Builder failuresToEject(int failuresToEject) {
+      if (failuresToEject <= 0) {
+        throw new IllegalArgumentException("failuresToEject must be positive");
+      }
+      this.failuresToEject = failuresToEject;
+      return this;
+    }
+
+    /**
+     * @param ejectionTime how long an ejected replica receives no requests, a single failure
+     *     after its return ejects it again
+     */
+    public Builder ejectionTime(Duration ejectionTime) {
+      if (ejectionTime == null || ejectionTime.isNegative()) {
+        throw new IllegalArgumentException("ejectionTime must not be negative");
+      }
+      this.ejectionTime = ejectionTime;
+      return this;
+    }
+
+    /**
+     * @param maxFailovers how many other replicas a failed request is sent to, 0 to never fail over
+     */
+    public Builder maxFailovers(int maxFailovers) {
+      if (maxFailovers < 0) {
+        throw new IllegalArgumentException("maxFailovers must not be negative");
+      }
+      this.maxFailovers = maxFailovers;
+      return this;
+    }
+
+    public LoadBalancerSettings build() {
+      return new LoadBalancerSettings(this);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package org.murinrad.fakeapi.client;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.murinrad.fakeapi.client.datamodel.Post;
+
+/**
+ * Reads a JSON array of posts token by token straight into {@link Post} instances.
+ * Only the id, userId and title fields are read, every other value is skipped
+ * without being materialized.
+ */
+final class PostReader implements Closeable {
+
+  private final JsonParser parser;
+  private final StringPool titles;
+  private final boolean readTitles;
+  private boolean started;
+  private boolean finished;
+  private long userId;
+
+  PostReader(JsonParser parser) {
+    this(parser, null);
+  }
+
+  /**
+   * @param parser the parser positioned before the array
+   * @param titles the pool deduplicating titles, null to allocate every title
+   */
+  PostReader(JsonParser parser, StringPool titles) {
+    this(parser, titles, true);
+  }
+
+  /**
+   * @param parser the parser positioned before the array
+   * @param titles the pool deduplicating titles, null to allocate every title
+   * @param readTitles false to skip the titles like unknown fields, the posts then have none
+   */
+  PostReader(JsonParser parser, StringPool titles, boolean readTitles) {
+    this.parser = parser;
+    this.titles = titles;
+    this.readTitles = readTitles;
+  }
+
+  /**
+   * Reads the next post of the array
+   *
+   * @return the next post or null when the array ended
+   * @throws IOException if the payload is not an array of post objects
+   */
+  Post next() throws IOException {
+    if (finished) {
+      return null;
+    }
+    if (!started) {
+      started = true;
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new JsonParseException(parser, "Expected an array of posts");
+      }
+    }
+    JsonToken token = parser.nextToken();
+    if (token == JsonToken.END_ARRAY) {
+      finished = true;
+      return null;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Expected a post object but was " + token);
+    }
+    long id = 0;
+    long postUserId = 0;
+    String title = null;
+    String field;
+    while ((field = parser.nextFieldName()) != null) {
+      parser.nextToken();
+      switch (field) {
+        case "id":
+          id = requireScalar(field).getValueAsLong();
+          break;
+        case "userId":
+          postUserId = requireScalar(field).getValueAsLong();
+          break;
+        case "title":
+          if (readTitles) {
+            requireScalar(field);
+            title = readTitle();
+          } else {
+            parser.skipChildren();
+          }
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    userId = postUserId;
+    return new Post(id, title);
+  }
+
+  /**
+   * Rejects an object or an array in place of a scalar field, reading it as a scalar
+   * would leave the parser inside the value
+   */
+  private JsonParser requireScalar(String field) throws IOException {
+    JsonToken token = parser.currentToken();
+    if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+      throw new JsonParseException(parser, "Expected a scalar " + field + " but was " + token);
+    }
+    return parser;
+  }
+
+  private String readTitle() throws IOException {
+    if (titles == null || parser.currentToken() != JsonToken.VALUE_STRING) {
+      return parser.getValueAsString();
+    }
+    return titles.get(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+  }
+
+  /**
+   * @return the id of the user owning the post last returned by {@link #next()}
+   */
+  long getUserId() {
+    return userId;
+  }
+
+  List<Post> readAll() throws IOException {
+    List<Post> posts = new ArrayList<>();
+    Post post;
+    while ((post = next()) != null) {
+      posts.add(post);
+    }
+    return posts;
+  }
+
+  Map<Long, List<Post>> readAllByUser() throws IOException {
+    Map<Long, List<Post>> postsByUser = new HashMap<>();
+    Post post;
+    while ((post = next()) != null) {
+      postsByUser.computeIfAbsent(userId, id -> new ArrayList<>()).add(post);
+    }
+    return postsByUser;
+  }
+
+  /**
+   * Exposes the remaining posts as a lazily parsed sequential stream.
+   * The reader is closed once the array is exhausted or the stream is closed,
+   * parse failures surface as {@link UncheckedIOException}.
+   *
+   * @return the stream of the remaining posts
+   */
+  Stream<Post> stream() {
+    Spliterator<Post> spliterator = new Spliterators.AbstractSpliterator<Post>(Long.MAX_VALUE,
+        Spliterator.ORDERED | Spliterator.NONNULL) {
+      @Override
+      public boolean tryAdvance(Consumer<? super Post> action) {
+        Post post;
+        try {
+          post = next();
+          if (post == null) {
+            close();
+            return false;
+          }
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+        action.accept(post);
+        return true;
+      }
+    };
+    return StreamSupport.stream(spliterator, false).onClose(() -> {
+      try {
+        close();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    });
+  }
+
+  @Override
+  public void close() throws IOException {
+    parser.close();
+  }
+}
@@ -0,0 +1,184 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.murinrad.fakeapi.client.metrics.ClientMetrics;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+
+/**
+ * Result of a request sent with retries and an optional hedge.
+ * The first successful attempt completes the future and cancels the others. A failed attempt
+ * is retried after a backoff while the policy and the budget allow, unless another attempt is
+ * still running, the pending hedge is then dropped. Cancelling the future cancels every running attempt.
+ *
+ * @param <T> the type of the parsed response
+ */
+final class RequestAttempts<T> extends CompletableFuture<T> {
+
+  private final Endpoint endpoint;
+  private final Supplier<CompletableFuture<T>> attempt;
+  private final RetryPolicy policy;
+  private final RetryBudget budget;
+  private final ClientMetrics metrics;
+  // guarded by this
+  private final List<CompletableFuture<T>> running = new ArrayList<>(2);
+  private int retries;
+  private boolean hedged;
+  private ScheduledFuture<?> hedgeTimer;
+  private ScheduledFuture<?> retryTimer;
+
+  private RequestAttempts(Endpoint endpoint, Supplier<CompletableFuture<T>> attempt, RetryPolicy policy,
+      RetryBudget budget, ClientMetrics metrics) {
+    this.endpoint = endpoint;
+    this.attempt = attempt;
+    this.policy = policy;
+    this.budget = budget;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Sends the first attempt
+   *
+   * @param endpoint the endpoint called
+   * @param attempt sends one attempt of the request
+   * @param policy the retry policy, null to only hedge
+   * @param budget the budget paying for retries and hedges
+   * @param hedgeDelayNanos when to send the hedge, negative for no hedge
+   * @param metrics where retries and hedges are counted
+   * @return the future of the first successful attempt
+   */
+  static <T> RequestAttempts<T> start(Endpoint endpoint, Supplier<CompletableFuture<T>> attempt,
+      RetryPolicy policy, RetryBudget budget, long hedgeDelayNanos, ClientMetrics metrics) {
+    RequestAttempts<T> attempts = new RequestAttempts<>(endpoint, attempt, policy, budget, metrics);
+    budget.deposit();
+    attempts.launch();
+    if (hedgeDelayNanos >= 0 && !attempts.isDone()) {
+      ScheduledFuture<?> timer = Timers.schedule(attempts::hedge, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+      synchronized (attempts) {
+        attempts.hedgeTimer = timer;
+      }
+      if (attempts.isDone()) {
+        timer.cancel(false);
+      }
+    }
+    return attempts;
+  }
+
+  private void launch() {
+    CompletableFuture<T> future = attempt.get();
+    synchronized (this) {
+      if (isDone()) {
+        future.cancel(true);
+        return;
+      }
+      running.add(future);
+    }
+    future.whenComplete((value, throwable) -> onAttemptDone(future, value, throwable));
+  }
+
+  private void hedge() {
+    synchronized (this) {
+      if (isDone() || hedged || running.size() != 1) {
+        return;
+      }
+      hedged = true;
+    }
+    if (budget.tryWithdraw()) {
+      metrics.requestHedged(endpoint);
+      launch();
+    }
+  }
+
+  private void onAttemptDone(CompletableFuture<T> future, T value, Throwable throwable) {
+    boolean othersRunning;
+    synchronized (this) {
+      running.remove(future);
+      othersRunning = !running.isEmpty();
+    }
+    if (throwable == null) {
+      complete(value);
+      return;
+    }
+    if (isDone() || future.isCancelled() || othersRunning) {
+      return;
+    }
+    Throwable failure = Futures.unwrap(throwable);
+    int retry;
+    ScheduledFuture<?> hedge;
+    synchronized (this) {
+      retry = ++retries;
+      // the hedge races the first attempt only, a retry is not hedged
+      hedged = true;
+      hedge = hedgeTimer;
+    }
+    if (hedge != null) {
+      hedge.cancel(false);
+    }
+    if (policy != null && retry < policy.getMaxAttempts() && RetryPolicy.isRetryable(failure)
+        && budget.tryWithdraw()) {
+      metrics.requestRetried(endpoint, retry);
+      ScheduledFuture<?> timer =
+          Timers.schedule(this::launch, policy.backoffNanos(retry), TimeUnit.NANOSECONDS);
+      synchronized (this) {
+        retryTimer = timer;
+      }
+      if (isDone()) {
+        timer.cancel(false);
+      }
+    } else {
+      completeExceptionally(failure);
+    }
+  }
+
+  @Override
+  public boolean complete(T value) {
+    boolean completed = super.complete(value);
+    if (completed) {
+      cancelAttempts();
+    }
+    return completed;
+  }
+
+  @Override
+  public boolean completeExceptionally(Throwable ex) {
+    boolean completed = super.completeExceptionally(ex);
+    if (completed) {
+      cancelAttempts();
+    }
+    return completed;
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    if (cancelled) {
+      cancelAttempts();
+    }
+    return cancelled;
+  }
+
+  private void cancelAttempts() {
+    List<CompletableFuture<T>> toCancel;
+    ScheduledFuture<?> hedge;
+    ScheduledFuture<?> retry;
+    synchronized (this) {
+      toCancel = new ArrayList<>(running);
+      running.clear();
+      hedge = hedgeTimer;
+      retry = retryTimer;
+    }
+    if (hedge != null) {
+      hedge.cancel(false);
+    }
+    if (retry != null) {
+      retry.cancel(false);
+    }
+    for (CompletableFuture<T> future : toCancel) {
+      future.cancel(true);
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive concurrency limit with a bounded wait queue and an optional token bucket rate cap.
+ * A request acquires a permit before it is handed to the transport and releases it once
+ * the response arrives, reporting the latency and whether the request was dropped.
+ * Permits are handed out in arrival order, a queued request waits at most the max queue wait
+ * for a slot and a rate token together.
+ */
+final class RequestLimiter {
+
+  private static final double AIMD_BACKOFF = 0.9;
+  /**
+   * The amount of samples after which the Vegas no-load latency is measured anew
+   */
+  private static final int VEGAS_PROBE_INTERVAL = 1000;
+
+  private final LimitAlgorithm algorithm;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueueSize;
+  private final long maxWaitNanos;
+  private final double nanosPerToken;
+  private final int burst;
+  private final LongSupplier nanoTime;
+  private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+  // guarded by this
+  private double limit;
+  private int inFlight;
+  private long minRtt = Long.MAX_VALUE;
+  private int rttSamples;
+  private double tokens;
+  private long lastRefill;
+
+  RequestLimiter(LimiterSettings settings, int transportLimit) {
+    this(settings, transportLimit, System::nanoTime);
+  }
+
+  RequestLimiter(LimiterSettings settings, int transportLimit, LongSupplier nanoTime) {
+    this.algorithm = settings.getAlgorithm();
+    this.maxLimit = settings.getMaxLimit() > 0 ? settings.getMaxLimit() : transportLimit;
+    this.minLimit = Math.min(settings.getMinLimit(), maxLimit);
+    this.limit = Math.max(minLimit, Math.min(settings.getInitialLimit(), maxLimit));
+    this.maxQueueSize = settings.getMaxQueueSize();
+    this.maxWaitNanos = settings.getMaxQueueWait().toNanos();
+    this.nanosPerToken = settings.getRequestsPerSecond() > 0
+        ? TimeUnit.SECONDS.toNanos(1) / settings.getRequestsPerSecond() : 0;
+    this.burst = settings.getBurst();
+    this.nanoTime = nanoTime;
+    this.tokens = burst;
+    this.lastRefill = nanoTime.getAsLong();
+  }
+
+  /**
+   * Requests a permit. The future completes once the request may be sent, it fails with a
+   * {@link RequestRejectedException} when the queue is full or the wait is exceeded.
+   * Cancelling the future gives up the place in the queue or the permit.
+   *
+   * @return the future of the permit
+   */
+  CompletableFuture<Void> acquire() {
+    Waiter waiter = new Waiter(nanoTime.getAsLong());
+    boolean granted;
+    synchronized (this) {
+      granted = inFlight < (int) limit && waiters.isEmpty();
+      if (granted) {
+        inFlight++;
+      } else if (waiters.size() >= maxQueueSize || maxWaitNanos == 0) {
+        waiter.permit.completeExceptionally(
+            new RequestRejectedException("Concurrency limit of " + (int) limit + " reached"));
+        return waiter.permit;
+      } else {
+        waiters.add(waiter);
+      }
+    }
+    if (granted) {
+      grant(waiter);
+      return waiter.permit;
+    }
+    waiter.timeout = Timers.schedule(() -> expire(waiter), maxWaitNanos, TimeUnit.NANOSECONDS);
+    waiter.permit.whenComplete((ignored, throwable) -> {
+      if (waiter.permit.isCancelled()) {
+        expire(waiter);
+      }
+    });
+    return waiter.permit;
+  }
+
+  /**
+   * Returns the permit of a request that got a response or failed
+   *
+   * @param rttNanos the time from sending the request to its response
+   * @param dropped whether the server was overloaded, the request failed, or the server answered 5xx or 429
+   */
+  void release(long rttNanos, boolean dropped) {
+    List<Waiter> granted;
+    synchronized (this) {
+      adapt(rttNanos, dropped);
+      inFlight--;
+      granted = dequeue();
+    }
+    grantAll(granted);
+  }
+
+  /**
+   * Returns a permit without a latency sample, e.g. of a cancelled request
+   */
+  void release() {
+    List<Waiter> granted;
+    synchronized (this) {
+      inFlight--;
+      granted = dequeue();
+    }
+    grantAll(granted);
+  }
+
+  synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  private void adapt(long rttNanos, boolean dropped) {
+    boolean saturated = inFlight * 2 >= limit;
+    if (algorithm == LimitAlgorithm.AIMD) {
+      if (dropped) {
+        limit = Math.max(minLimit, limit * AIMD_BACKOFF);
+      } else if (saturated) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      return;
+    }
+    if (++rttSamples >= VEGAS_PROBE_INTERVAL) {
+      rttSamples = 0;
+      minRtt = rttNanos;
+    } else {
+      minRtt = Math.min(minRtt, rttNanos);
+    }
+    double log = Math.max(1, Math.log10(limit));
+    if (dropped) {
+      limit = Math.max(minLimit, limit - log);
+      return;
+    }
+    if (!saturated || rttNanos <= 0) {
+      return;
+    }
+    double queued = limit * (1 - (double) minRtt / rttNanos);
+    if (queued <= log) {
+      limit = Math.min(maxLimit, limit + 6 * log);
+    } else if (queued < 3 * log) {
+      limit = Math.min(maxLimit, limit + log);
+    } else if (queued > 6 * log) {
+      limit = Math.max(minLimit, limit - log);
+    }
+  }
+
+  private List<Waiter> dequeue() {
+    List<Waiter> granted = null;
+    while (inFlight < (int) limit && !waiters.isEmpty()) {
+      if (granted == null) {
+        granted = new ArrayList<>();
+      }
+      inFlight++;
+      granted.add(waiters.poll());
+    }
+    return granted;
+  }
+
+  private void grantAll(List<Waiter> granted) {
+    if (granted != null) {
+      for (Waiter waiter : granted) {
+        ScheduledFuture<?> timeout = waiter.timeout;
+        if (timeout != null) {
+          timeout.cancel(false);
+        }
+        grant(waiter);
+      }
+    }
+  }
+
+  /**
+   * Completes the permit once a rate token is available, rejects it when the token comes too late
+   */
+  private void grant(Waiter waiter) {
+    long delay = nanosPerToken == 0 ? 0 : reserveToken(maxWaitNanos - (nanoTime.getAsLong() - waiter.enqueued));
+    if (delay < 0) {
+      release();
+      waiter.permit.completeExceptionally(new RequestRejectedException("Rate limit reached"));
+    } else if (delay == 0) {
+      deliver(waiter);
+    } else {
+      Timers.schedule(() -> deliver(waiter), delay, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void deliver(Waiter waiter) {
+    if (!waiter.permit.complete(null)) {
+      // cancelled in the meantime
+      release();
+    }
+  }
+
+  /**
+   * Takes a token from the bucket, tokens may be borrowed from the future up to the allowed wait
+   *
+   * @return the nanos until the token is available, negative when it is not available within the wait
+   */
+  private synchronized long reserveToken(long allowedWaitNanos) {
+    long now = nanoTime.getAsLong();
+    tokens = Math.min(burst, tokens + (now - lastRefill) / nanosPerToken);
+    lastRefill = now;
+    if (tokens >= 1) {
+      tokens--;
+      return 0;
+    }
+    long wait = (long) Math.ceil((1 - tokens) * nanosPerToken);
+    if (wait > allowedWaitNanos) {
+      return -1;
+    }
+    tokens--;
+    return wait;
+  }
+
+  private void expire(Waiter waiter) {
+    boolean removed;
+    synchronized (this) {
+      removed = waiters.remove(waiter);
+    }
+    if (removed) {
+      waiter.permit.completeExceptionally(new RequestRejectedException(
+          "No free slot within " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms"));
+    }
+  }
+
+  private static final class Waiter {
+
+    private final CompletableFuture<Void> permit = new CompletableFuture<>();
+    private final long enqueued;
+    private volatile ScheduledFuture<?> timeout;
+
+    private Waiter(long enqueued) {
+      this.enqueued = enqueued;
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package org.murinrad.fakeapi.client;
+
+/**
+ * Thrown when the client itself refuses a request because the concurrency or rate limit
+ * is exhausted and the request could not be queued or waited too long.
+ * Nothing was sent to the server, the code is the one a server uses for the same condition.
+ */
+public class RequestRejectedException extends FakeApiClientException {
+
+  public static final int CODE = 429;
+
+  public RequestRejectedException(String message) {
+    super(message, CODE);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Request rejected by the client: %s", getMessage());
+  }
+}
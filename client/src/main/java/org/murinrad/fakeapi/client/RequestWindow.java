@@ -0,0 +1,109 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs an asynchronous task for every input while keeping at most a fixed amount of
+ * tasks in flight. A new task is started only when a previous one completes, so callers
+ * never pile up work in the transport queue.
+ * The first failure fails the whole window and no further tasks are started.
+ *
+ * @param <I> the input type
+ * @param <T> the result type
+ */
+final class RequestWindow<I, T> {
+
+  private final List<I> inputs;
+  private final Function<I, CompletableFuture<T>> task;
+  private final Object[] results;
+  private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+  private final AtomicInteger permits;
+  private final AtomicInteger remaining;
+  private final AtomicInteger wip = new AtomicInteger();
+  // only touched by the thread holding the drain loop
+  private int next;
+
+  private RequestWindow(List<I> inputs, int limit, Function<I, CompletableFuture<T>> task) {
+    this.inputs = inputs;
+    this.task = task;
+    this.results = new Object[inputs.size()];
+    this.permits = new AtomicInteger(Math.max(1, limit));
+    this.remaining = new AtomicInteger(inputs.size());
+  }
+
+  /**
+   * Starts the tasks
+   *
+   * @param inputs the inputs, one task is started per input
+   * @param limit the maximum amount of tasks in flight
+   * @param task the task to run for an input
+   * @return a future of the results, in the order of the inputs
+   */
+  static <I, T> CompletableFuture<List<T>> run(List<I> inputs, int limit,
+      Function<I, CompletableFuture<T>> task) {
+    RequestWindow<I, T> window = new RequestWindow<>(inputs, limit, task);
+    if (inputs.isEmpty()) {
+      window.result.complete(new ArrayList<>());
+    } else {
+      window.drain();
+    }
+    return window.result;
+  }
+
+  /**
+   * Starts as many tasks as there are free permits.
+   * Completions that happen synchronously inside the loop only return their permit,
+   * the loop then picks them up, so the call stack does not grow with the input size.
+   */
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      while (next < inputs.size() && !result.isDone() && permits.get() > 0) {
+        permits.decrementAndGet();
+        start(next++);
+      }
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void start(int index) {
+    CompletableFuture<T> future;
+    try {
+      future = task.apply(inputs.get(index));
+    } catch (RuntimeException ex) {
+      result.completeExceptionally(ex);
+      return;
+    }
+    future.whenComplete((value, throwable) -> {
+      if (throwable != null) {
+        result.completeExceptionally(Futures.unwrap(throwable));
+        return;
+      }
+      results[index] = value;
+      if (remaining.decrementAndGet() == 0) {
+        complete();
+      } else {
+        permits.incrementAndGet();
+        drain();
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private void complete() {
+    List<T> values = new ArrayList<>(results.length);
+    for (Object value : results) {
+      values.add((T) value);
+    }
+    Arrays.fill(results, null);
+    result.complete(values);
+  }
+}
@@ -0,0 +1,190 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-process cache of parsed responses.
+ * Entries expire after a fixed time to live, the least recently used entries are evicted
+ * when the entry or weight budget is exceeded. Concurrent misses of the same key share
+ * a single load.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class ResponseCache<K, V> {
+
+  private final long timeToLiveNanos;
+  private final int maxEntries;
+  private final long maxWeight;
+  private final ToLongFunction<V> weigher;
+  private final LongSupplier nanoTime;
+  // guarded by this, iteration order is the access order
+  private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  // guarded by this
+  private long weight;
+
+  ResponseCache(CacheSettings settings, ToLongFunction<V> weigher) {
+    this(settings, weigher, System::nanoTime);
+  }
+
+  ResponseCache(CacheSettings settings, ToLongFunction<V> weigher, LongSupplier nanoTime) {
+    this.timeToLiveNanos = settings.getTimeToLive().toNanos();
+    this.maxEntries = settings.getMaxEntries();
+    this.maxWeight = settings.getMaxBytes();
+    this.weigher = weigher;
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Returns the cached value or joins the load in flight, otherwise starts a new load
+   *
+   * @param key the key
+   * @param loader starts the load of the value
+   * @return a future of the value, private to the caller
+   */
+  CompletableFuture<V> getAsync(K key, Supplier<CompletableFuture<V>> loader) {
+    V cached = getIfPresent(key);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+    CompletableFuture<V> load = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, load);
+    if (existing != null) {
+      coalesced.increment();
+      return existing.thenApply(value -> value);
+    }
+    misses.increment();
+    CompletableFuture<V> source;
+    try {
+      source = loader.get();
+    } catch (RuntimeException ex) {
+      source = new CompletableFuture<>();
+      source.completeExceptionally(ex);
+    }
+    source.whenComplete((value, throwable) -> finish(key, load, value, throwable));
+    return load.thenApply(value -> value);
+  }
+
+  /**
+   * Blocking variant of {@link #getAsync(Object, Supplier)}, the load runs on the calling thread
+   *
+   * @param key the key
+   * @param loader loads the value
+   * @return the value
+   * @throws IOException if the load or the joined load fails on transport level
+   * @throws FakeApiClientException if the load or the joined load returns an unexpected status
+   */
+  V get(K key, Loader<V> loader) throws IOException, FakeApiClientException {
+    V cached = getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    CompletableFuture<V> load = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, load);
+    if (existing != null) {
+      coalesced.increment();
+      // a private copy, an interrupted caller must not cancel the load of the others
+      return Futures.await(existing.thenApply(value -> value));
+    }
+    misses.increment();
+    try {
+      V value = loader.load();
+      finish(key, load, value, null);
+      return value;
+    } catch (IOException | FakeApiClientException | RuntimeException ex) {
+      finish(key, load, null, ex);
+      throw ex;
+    }
+  }
+
+  private void finish(K key, CompletableFuture<V> load, V value, Throwable throwable) {
+    if (throwable == null) {
+      put(key, value);
+    }
+    inFlight.remove(key, load);
+    if (throwable == null) {
+      load.complete(value);
+    } else {
+      load.completeExceptionally(Futures.unwrap(throwable));
+    }
+  }
+
+  V getIfPresent(K key) {
+    synchronized (this) {
+      Entry<V> entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (nanoTime.getAsLong() - entry.expiresAt >= 0) {
+        entries.remove(key);
+        weight -= entry.weight;
+        expirations.increment();
+        return null;
+      }
+      hits.increment();
+      return entry.value;
+    }
+  }
+
+  void put(K key, V value) {
+    if (value == null || timeToLiveNanos == 0) {
+      return;
+    }
+    Entry<V> entry = new Entry<>(value, weigher.applyAsLong(value),
+        nanoTime.getAsLong() + timeToLiveNanos);
+    synchronized (this) {
+      Entry<V> previous = entries.put(key, entry);
+      if (previous != null) {
+        weight -= previous.weight;
+      }
+      weight += entry.weight;
+      Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+      while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+        weight -= eldest.next().getValue().weight;
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  CacheStats stats() {
+    synchronized (this) {
+      return new CacheStats(hits.sum(), misses.sum(), coalesced.sum(), evictions.sum(),
+          expirations.sum(), entries.size(), weight);
+    }
+  }
+
+  interface Loader<V> {
+
+    V load() throws IOException, FakeApiClientException;
+
+  }
+
+  private static final class Entry<V> {
+
+    private final V value;
+    private final long weight;
+    private final long expiresAt;
+
+    private Entry(V value, long weight, long expiresAt) {
+      this.value = value;
+      this.weight = weight;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
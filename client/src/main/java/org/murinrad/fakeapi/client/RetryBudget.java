@@ -0,0 +1,56 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Balance of retries a client may send. Every request deposits the budget ratio,
+ * every retry or hedge withdraws one. The minimum per second is granted on top of the balance.
+ */
+final class RetryBudget {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+  /**
+   * The balance is capped so a long healthy period does not allow a retry storm later
+   */
+  private static final double MAX_BALANCE = 100;
+
+  private final double ratio;
+  private final int minPerSecond;
+  private final LongSupplier nanoTime;
+  // guarded by this
+  private double balance;
+  private long windowStart;
+  private int windowRetries;
+
+  RetryBudget(double ratio, int minPerSecond, LongSupplier nanoTime) {
+    this.ratio = ratio;
+    this.minPerSecond = minPerSecond;
+    this.nanoTime = nanoTime;
+    this.windowStart = nanoTime.getAsLong();
+  }
+
+  synchronized void deposit() {
+    balance = Math.min(MAX_BALANCE, balance + ratio);
+  }
+
+  /**
+   * @return whether a retry may be sent
+   */
+  synchronized boolean tryWithdraw() {
+    long now = nanoTime.getAsLong();
+    if (now - windowStart >= SECOND) {
+      windowStart = now;
+      windowRetries = 0;
+    }
+    if (windowRetries < minPerSecond) {
+      windowRetries++;
+      return true;
+    }
+    if (balance >= 1) {
+      balance--;
+      return true;
+    }
+    return false;
+  }
+}
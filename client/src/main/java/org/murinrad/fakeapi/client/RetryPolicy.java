@@ -0,0 +1,147 @@
+package org.murinrad.fakeapi.client;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import org.murinrad.fakeapi.client.transport.ConnectTimeoutException;
+
+/**
+ * When and how often the client retries a failed request.
+ * Only the GET requests of the client are retried, on 5xx and 429 responses and when the
+ * connection could not be established. The backoff grows exponentially with full jitter.
+ * Retries are paid from a budget that grows with every request, so a failing server sees
+ * at most the budget ratio of extra traffic, plus a small minimum amount per second.
+ */
+public final class RetryPolicy {
+
+  private final int maxAttempts;
+  private final Duration initialBackoff;
+  private final Duration maxBackoff;
+  private final double budgetRatio;
+  private final int minRetriesPerSecond;
+
+  private RetryPolicy(Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.initialBackoff = builder.initialBackoff;
+    this.maxBackoff = builder.maxBackoff;
+    this.budgetRatio = builder.budgetRatio;
+    this.minRetriesPerSecond = builder.minRetriesPerSecond;
+  }
+
+  /**
+   * @return the maximum amount of attempts of a request, the first one included
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public Duration getInitialBackoff() {
+    return initialBackoff;
+  }
+
+  public Duration getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  /**
+   * @return the amount of retries earned by a request
+   */
+  public double getBudgetRatio() {
+    return budgetRatio;
+  }
+
+  public int getMinRetriesPerSecond() {
+    return minRetriesPerSecond;
+  }
+
+  /**
+   * The delay before a retry, a random value up to the exponential backoff of the retry
+   *
+   * @param retry the number of the retry, starting at 1
+   * @return the delay in nanos
+   */
+  long backoffNanos(int retry) {
+    double backoff = initialBackoff.toNanos() * Math.pow(2, retry - 1);
+    long cap = (long) Math.min(maxBackoff.toNanos(), backoff);
+    return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+  }
+
+  /**
+   * @return whether the failure is worth another attempt
+   */
+  static boolean isRetryable(Throwable failure) {
+    if (failure instanceof RequestRejectedException || failure instanceof CircuitOpenException) {
+      return false;
+    }
+    if (failure instanceof FakeApiClientException) {
+      int code = ((FakeApiClientException) failure).getCode();
+      return code == 429 || code >= 500;
+    }
+    // a timeout waiting for the response may have reached the server, only connect timeouts are retried
+    return failure instanceof ConnectTimeoutException || failure instanceof ConnectException
+        || failure instanceof NoRouteToHostException;
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "maxAttempts: " + getMaxAttempts() + ", "
+        + "initialBackoff: " + getInitialBackoff() + ", "
+        + "maxBackoff: " + getMaxBackoff() + ", "
+        + "budgetRatio: " + getBudgetRatio() + ", "
+        + "minRetriesPerSecond: " + getMinRetriesPerSecond()
+        + "}";
+    return sb;
+  }
+
+  public static final class Builder {
+
+    private int maxAttempts = 3;
+    private Duration initialBackoff = Duration.ofMillis(50);
+    private Duration maxBackoff = Duration.ofSeconds(2);
+    private double budgetRatio = 0.2;
+    private int minRetriesPerSecond = 10;
+
+    /**
+     * @param maxAttempts the maximum amount of attempts of a request, the first one included
+     */
+    public Builder maxAttempts(int maxAttempts) {
+      if (maxAttempts <= 0) {
+        throw new IllegalArgumentException("maxAttempts must be positive");
+      }
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * @param initialBackoff the upper bound of the delay before the first retry, doubled for every further retry
+     * @param maxBackoff the upper bound of the delay of any retry
+     */
+    public Builder backoff(Duration initialBackoff, Duration maxBackoff) {
+      if (initialBackoff == null || initialBackoff.isNegative() || maxBackoff == null
+          || maxBackoff.compareTo(initialBackoff) < 0) {
+        throw new IllegalArgumentException("Backoff must satisfy 0 <= initialBackoff <= maxBackoff");
+      }
+      this.initialBackoff = initialBackoff;
+      this.maxBackoff = maxBackoff;
+      return this;
+    }
+
+    /**
+     * @param budgetRatio the amount of retries earned by a request, e.g. 0.2 for at most 20% retries
+     * @param minRetriesPerSecond retries allowed every second regardless of the budget
+     */
+    public Builder budget(double budgetRatio, int minRetriesPerSecond) {
+      if (budgetRatio < 0 || minRetriesPerSecond < 0) {
+        throw new IllegalArgumentException("Budget must not be negative");
+      }
+      this.budgetRatio = budgetRatio;
+      this.minRetriesPerSecond = minRetriesPerSecond;
+      return this;
+    }
+
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.murinrad.fakeapi.client;
+
+/**
+ * Lossy pool deduplicating short strings read by the JSON parser.
+ * The pool is a direct-mapped table, a string that hashes to an occupied slot evicts the previous
+ * one, so the pool never grows and needs no locking: strings are immutable and safely published,
+ * a racing reader at worst misses a slot and allocates a fresh copy.
+ * A lookup compares against the parser's character buffer, so a hit allocates nothing.
+ */
+final class StringPool {
+
+  /**
+   * Longer strings are not pooled, they are unlikely to repeat and expensive to compare
+   */
+  static final int MAX_LENGTH = 256;
+  private final String[] table;
+  private final int mask;
+
+  /**
+   * @param capacity the amount of slots, rounded up to a power of two
+   */
+  StringPool(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    table = new String[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Returns a string equal to the given characters, a pooled one when available
+   *
+   * @param chars the buffer holding the characters
+   * @param offset the first character in the buffer
+   * @param length the amount of characters
+   * @return the string
+   */
+  String get(char[] chars, int offset, int length) {
+    if (length > MAX_LENGTH) {
+      return new String(chars, offset, length);
+    }
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + chars[i];
+    }
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    String pooled = table[slot];
+    if (pooled != null && matches(pooled, chars, offset, length)) {
+      return pooled;
+    }
+    String value = new String(chars, offset, length);
+    table[slot] = value;
+    return value;
+  }
+
+  private static boolean matches(String pooled, char[] chars, int offset, int length) {
+    if (pooled.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (pooled.charAt(i) != chars[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
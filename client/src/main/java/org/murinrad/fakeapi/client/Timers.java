@@ -0,0 +1,57 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.murinrad.fakeapi.client.tracing.TraceContext;
+import org.murinrad.fakeapi.client.tracing.TraceScope;
+
+/**
+ * A single daemon thread shared by all clients, running deadlines and delayed tasks.
+ * The tasks only complete futures or hand work over, they never block the thread.
+ */
+final class Timers {
+
+  private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+  private Timers() {
+  }
+
+  private static ScheduledThreadPoolExecutor createScheduler() {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "fakeapi-timer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+    return SCHEDULER.schedule(task, delay, unit);
+  }
+
+  /**
+   * Fails the future with a {@link TimeoutException} unless it completes within the timeout
+   *
+   * @param future the future
+   * @param timeout the time the future has to complete
+   * @param context the context current while the timeout fails the future
+   * @return the same future
+   */
+  static <T> CompletableFuture<T> failAfter(CompletableFuture<T> future, Duration timeout, TraceContext context) {
+    ScheduledFuture<?> deadline = schedule(() -> {
+      TraceScope contextScope = context.makeCurrent();
+      try {
+        future.completeExceptionally(new TimeoutException("No response within " + timeout.toMillis() + " ms"));
+      } finally {
+        contextScope.close();
+      }
+    }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    future.whenComplete((value, throwable) -> deadline.cancel(false));
+    return future;
+  }
+}
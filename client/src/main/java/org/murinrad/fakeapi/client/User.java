@@ -3,8 +3,16 @@ package org.murinrad.fakeapi.client;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+/**
+ * The user as returned by the API, internal to the client.
+ * Public only because the accessors generated by Afterburner are defined in their own class
+ * loader, which may not access package-private classes on Java 16 and later
+ */
 @JsonIgnoreProperties(ignoreUnknown = true)
-class User {
+public class User {
+
+  public User() {
+  }
 
   @JsonProperty("id")
   private long id;
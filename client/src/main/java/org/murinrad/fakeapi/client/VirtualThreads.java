@@ -0,0 +1,28 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor of {@link ExecutionMode#VIRTUAL_THREADS}.
+ * This is the fallback for runtimes before Java 21, the multi-release jar carries
+ * a Java 21 variant of this class starting a virtual thread per task.
+ */
+final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return an executor starting a new thread per task, idle threads are reused
+   */
+  static ExecutorService newThreadPerTaskExecutor() {
+    AtomicInteger counter = new AtomicInteger();
+    return Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "fakeapi-blocking-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
@@ -1,11 +1,17 @@
 package org.murinrad.fakeapi.client.datamodel;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class Post {
 
   private final long id;
   private final String title;
 
-  public Post(long id, String title) {
+  @JsonCreator
+  public Post(@JsonProperty("id") long id, @JsonProperty("title") String title) {
     this.id = id;
     this.title = title;
   }
@@ -1,8 +1,12 @@
 package org.murinrad.fakeapi.client.datamodel;
 
-import java.util.ArrayList;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
 import java.util.List;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class UserOverview {
 
   private final String name;
@@ -10,8 +14,14 @@ public class UserOverview {
   private final String email;
   private final List<Post> posts;
 
-  public UserOverview(String name, String username, String email, List<Post> posts) {
-    this.posts = new ArrayList<>(posts);
+  /**
+   * The posts are adopted instead of copied, the overview exposes them through an unmodifiable
+   * view, so the list must not be changed after it was handed over
+   */
+  @JsonCreator
+  public UserOverview(@JsonProperty("name") String name, @JsonProperty("username") String username,
+      @JsonProperty("email") String email, @JsonProperty("posts") List<Post> posts) {
+    this.posts = posts == null ? Collections.emptyList() : Collections.unmodifiableList(posts);
     this.name = name;
     this.username = username;
     this.email = email;
@@ -0,0 +1,414 @@
+package org.murinrad.fakeapi.client.datamodel;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact binary form of {@link UserOverview} and {@link Post}.
+ * Ids and lengths are unsigned LEB128 varints, strings are UTF-8 prefixed by their length plus one,
+ * 0 marking null. An overview is its name, username and email followed by the post count and the posts,
+ * a post is its id followed by its title.
+ * Strings are decoded straight from the array of heap buffers, direct and mapped buffers are read
+ * through a scratch array. A stream of overviews, as written by {@link #writeAll(Collection, WritableByteChannel)},
+ * starts with a magic number and a version and frames every overview with its length.
+ */
+public final class UserOverviewCodec {
+
+  private static final int MAGIC = 0x46414F56;
+  private static final byte VERSION = 1;
+  private static final int HEADER_SIZE = 5;
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private UserOverviewCodec() {
+  }
+
+  /**
+   * @return the amount of bytes {@link #encode(UserOverview, ByteBuffer)} writes
+   */
+  public static int encodedSize(UserOverview overview) {
+    int size = stringSize(overview.getName()) + stringSize(overview.getUsername())
+        + stringSize(overview.getEmail()) + varintSize(overview.getPosts().size());
+    for (Post post : overview.getPosts()) {
+      size += encodedSize(post);
+    }
+    return size;
+  }
+
+  /**
+   * @return the amount of bytes {@link #encode(Post, ByteBuffer)} writes
+   */
+  public static int encodedSize(Post post) {
+    return varintSize(post.getId()) + stringSize(post.getTitle());
+  }
+
+  /**
+   * Writes the overview at the position of the buffer
+   *
+   * @throws java.nio.BufferOverflowException when the buffer has less than {@link #encodedSize(UserOverview)} remaining
+   */
+  public static void encode(UserOverview overview, ByteBuffer buffer) {
+    writeString(overview.getName(), buffer);
+    writeString(overview.getUsername(), buffer);
+    writeString(overview.getEmail(), buffer);
+    List<Post> posts = overview.getPosts();
+    writeVarint(posts.size(), buffer);
+    for (Post post : posts) {
+      encode(post, buffer);
+    }
+  }
+
+  /**
+   * Writes the post at the position of the buffer
+   *
+   * @throws java.nio.BufferOverflowException when the buffer has less than {@link #encodedSize(Post)} remaining
+   */
+  public static void encode(Post post, ByteBuffer buffer) {
+    writeVarint(post.getId(), buffer);
+    writeString(post.getTitle(), buffer);
+  }
+
+  /**
+   * @return the encoded overview
+   */
+  public static byte[] encode(UserOverview overview) {
+    byte[] bytes = new byte[encodedSize(overview)];
+    encode(overview, ByteBuffer.wrap(bytes));
+    return bytes;
+  }
+
+  /**
+   * Reads an overview from the position of the buffer and advances it past the overview
+   *
+   * @throws IllegalArgumentException when the data is malformed
+   * @throws java.nio.BufferUnderflowException when the data is truncated
+   */
+  public static UserOverview decodeUserOverview(ByteBuffer buffer) {
+    return decodeUserOverview(buffer, new Scratch());
+  }
+
+  /**
+   * Reads a post from the position of the buffer and advances it past the post
+   *
+   * @throws IllegalArgumentException when the data is malformed
+   * @throws java.nio.BufferUnderflowException when the data is truncated
+   */
+  public static Post decodePost(ByteBuffer buffer) {
+    return decodePost(buffer, new Scratch());
+  }
+
+  /**
+   * Writes the overviews as a stream to the channel
+   *
+   * @param overviews the overviews
+   * @param channel the channel, left open
+   */
+  public static void writeAll(Collection<UserOverview> overviews, WritableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    buffer.putInt(MAGIC).put(VERSION);
+    for (UserOverview overview : overviews) {
+      int size = encodedSize(overview);
+      if (buffer.remaining() < size + 5) {
+        flush(buffer, channel);
+        if (buffer.capacity() < size + 5) {
+          buffer = ByteBuffer.allocate(size + 5);
+        }
+      }
+      writeVarint(size, buffer);
+      encode(overview, buffer);
+    }
+    flush(buffer, channel);
+  }
+
+  /**
+   * Writes the overviews as a stream to the file, replacing it
+   */
+  public static void writeAll(Collection<UserOverview> overviews, Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeAll(overviews, channel);
+    }
+  }
+
+  /**
+   * Reads a stream of overviews from the channel until its end
+   *
+   * @param channel the channel, left open
+   * @throws IOException when the stream is truncated or malformed
+   */
+  public static List<UserOverview> readAll(ReadableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    buffer.flip();
+    buffer = fill(channel, buffer, HEADER_SIZE);
+    if (buffer.remaining() < HEADER_SIZE) {
+      throw new EOFException("Missing header");
+    }
+    checkHeader(buffer);
+    Scratch scratch = new Scratch();
+    List<UserOverview> overviews = new ArrayList<>();
+    while (true) {
+      // the frame size of an overview takes at most 5 bytes
+      buffer = fill(channel, buffer, 5);
+      if (!buffer.hasRemaining()) {
+        return overviews;
+      }
+      int size;
+      try {
+        size = checkedSize(readVarintLong(buffer));
+      } catch (RuntimeException e) {
+        throw new IOException("Malformed frame", e);
+      }
+      buffer = fill(channel, buffer, size);
+      if (buffer.remaining() < size) {
+        throw new EOFException("Truncated overview");
+      }
+      overviews.add(decodeFramed(buffer, scratch, buffer.position() + size));
+    }
+  }
+
+  /**
+   * Reads the stream of overviews of the file, mapping it into memory
+   *
+   * @throws IOException when the stream is truncated or malformed
+   */
+  public static List<UserOverview> readAll(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < HEADER_SIZE) {
+        throw new EOFException("Missing header");
+      }
+      checkHeader(buffer);
+      Scratch scratch = new Scratch();
+      List<UserOverview> overviews = new ArrayList<>();
+      while (buffer.hasRemaining()) {
+        int size;
+        try {
+          size = checkedSize(readVarintLong(buffer));
+        } catch (RuntimeException e) {
+          throw new IOException("Malformed frame", e);
+        }
+        if (buffer.remaining() < size) {
+          throw new EOFException("Truncated overview");
+        }
+        overviews.add(decodeFramed(buffer, scratch, buffer.position() + size));
+      }
+      return overviews;
+    }
+  }
+
+  private static UserOverview decodeFramed(ByteBuffer buffer, Scratch scratch, int end) throws IOException {
+    try {
+      UserOverview overview = decodeUserOverview(buffer, scratch);
+      if (buffer.position() != end) {
+        throw new IOException("Overview does not match its frame");
+      }
+      return overview;
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed overview", e);
+    }
+  }
+
+  private static UserOverview decodeUserOverview(ByteBuffer buffer, Scratch scratch) {
+    String name = readString(buffer, scratch);
+    String username = readString(buffer, scratch);
+    String email = readString(buffer, scratch);
+    int count = checkedSize(readVarintLong(buffer));
+    // every post takes at least two bytes, a larger count is corrupt
+    if (count > buffer.remaining() / 2) {
+      throw new IllegalArgumentException("Post count " + count + " exceeds the data");
+    }
+    List<Post> posts = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      posts.add(decodePost(buffer, scratch));
+    }
+    return new UserOverview(name, username, email, posts);
+  }
+
+  private static Post decodePost(ByteBuffer buffer, Scratch scratch) {
+    long id = readVarintLong(buffer);
+    return new Post(id, readString(buffer, scratch));
+  }
+
+  private static void checkHeader(ByteBuffer buffer) throws IOException {
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException("Not a stream of overviews");
+    }
+    byte version = buffer.get();
+    if (version != VERSION) {
+      throw new IOException("Unsupported version " + version);
+    }
+  }
+
+  /**
+   * Reads from the channel until the buffer holds the amount of bytes or the channel ends,
+   * the buffer is grown when it is too small
+   *
+   * @param buffer the buffer, ready to be read from
+   * @return the buffer ready to be read from, possibly a new one
+   */
+  private static ByteBuffer fill(ReadableByteChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return buffer;
+    }
+    if (buffer.capacity() < bytes) {
+      buffer = ByteBuffer.allocate(bytes).put(buffer);
+    } else {
+      buffer.compact();
+    }
+    while (buffer.position() < bytes && channel.read(buffer) >= 0) {
+      // keep reading
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static int checkedSize(long size) {
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Size " + size + " is too large");
+    }
+    return (int) size;
+  }
+
+  static int varintSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  static void writeVarint(long value, ByteBuffer buffer) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  static long readVarintLong(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+
+  private static int stringSize(String value) {
+    if (value == null) {
+      return 1;
+    }
+    int length = utf8Length(value);
+    return varintSize(length + 1L) + length;
+  }
+
+  private static int utf8Length(String value) {
+    int length = value.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x800) {
+        // a surrogate pair takes 4 bytes, an unpaired surrogate is replaced by a 3 byte character
+        bytes += 2;
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+          i++;
+        }
+      } else if (c >= 0x80) {
+        bytes++;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Encodes the string char by char, unpaired surrogates are written as the replacement character U+FFFD
+   */
+  private static void writeString(String value, ByteBuffer buffer) {
+    if (value == null) {
+      buffer.put((byte) 0);
+      return;
+    }
+    writeVarint(utf8Length(value) + 1L, buffer);
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xC0 | (c >> 6)));
+        buffer.put((byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          buffer.put((byte) (0xF0 | (codePoint >> 18)));
+          buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+          buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+          buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+        } else {
+          buffer.put((byte) 0xEF).put((byte) 0xBF).put((byte) 0xBD);
+        }
+      } else {
+        buffer.put((byte) (0xE0 | (c >> 12)));
+        buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
+  private static String readString(ByteBuffer buffer, Scratch scratch) {
+    int length = checkedSize(readVarintLong(buffer)) - 1;
+    if (length < 0) {
+      return null;
+    }
+    if (length > buffer.remaining()) {
+      throw new IllegalArgumentException("String length " + length + " exceeds the data");
+    }
+    String value;
+    if (buffer.hasArray()) {
+      value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] bytes = scratch.bytes(length);
+      buffer.get(bytes, 0, length);
+      value = new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+    return value;
+  }
+
+  /**
+   * Reusable array for strings of buffers without an accessible array
+   */
+  private static final class Scratch {
+
+    private byte[] bytes = new byte[0];
+
+    private byte[] bytes(int length) {
+      if (bytes.length < length) {
+        bytes = new byte[Math.max(length, 256)];
+      }
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package org.murinrad.fakeapi.client.metrics;
+
+import org.murinrad.fakeapi.client.transport.Transport;
+
+/**
+ * SPI the client reports its requests to.
+ * The methods are called on the transport threads for every request, implementations
+ * must be thread safe and should neither block nor allocate on these paths.
+ *
+ * @see MicrometerMetrics
+ */
+public interface ClientMetrics {
+
+  /**
+   * Metrics that record nothing, the default of the client
+   */
+  ClientMetrics NOOP = new ClientMetrics() {
+  };
+
+  /**
+   * Called once when a client starts using the transport, e.g. to register gauges of its queue
+   *
+   * @param transport the transport of the client
+   */
+  default void bindTransport(Transport transport) {
+  }
+
+  /**
+   * Called when the response headers of a request arrive
+   *
+   * @param endpoint the endpoint called
+   * @param statusCode the HTTP status of the response
+   * @param durationNanos the time from submitting the request to the response headers,
+   *     including the time spent in the queue of the transport
+   */
+  default void requestCompleted(Endpoint endpoint, int statusCode, long durationNanos) {
+  }
+
+  /**
+   * Called when a request fails without a response, e.g. on connection errors or cancellation
+   *
+   * @param endpoint the endpoint called
+   * @param durationNanos the time from submitting the request to the failure
+   */
+  default void requestFailed(Endpoint endpoint, long durationNanos) {
+  }
+
+  /**
+   * Called when a failed request is about to be retried
+   *
+   * @param endpoint the endpoint called
+   * @param retry the number of the retry, starting at 1
+   */
+  default void requestRetried(Endpoint endpoint, int retry) {
+  }
+
+  /**
+   * Called when a slow request is hedged with a second one
+   *
+   * @param endpoint the endpoint called
+   */
+  default void requestHedged(Endpoint endpoint) {
+  }
+
+  /**
+   * Called when the body of a successful response has been read
+   *
+   * @param endpoint the endpoint called
+   * @param bytes the size of the decoded body
+   * @param parseNanos the time spent reading and deserializing the body
+   */
+  default void bodyRead(Endpoint endpoint, long bytes, long parseNanos) {
+  }
+
+  /**
+   * Called when the body of a successful response has been read, with the size on the wire.
+   * Delegates to {@link #bodyRead(Endpoint, long, long)} unless overridden
+   *
+   * @param endpoint the endpoint called
+   * @param wireBytes the size of the body as received, compressed when the server compressed it
+   * @param bytes the size of the decoded body
+   * @param parseNanos the time spent reading, decoding and deserializing the body
+   */
+  default void bodyRead(Endpoint endpoint, long wireBytes, long bytes, long parseNanos) {
+    bodyRead(endpoint, bytes, parseNanos);
+  }
+}
@@ -0,0 +1,24 @@
+package org.murinrad.fakeapi.client.metrics;
+
+/**
+ * The endpoints of the API the client calls, used as the tag of recorded metrics
+ */
+public enum Endpoint {
+
+  USER("/users/"),
+  POSTS_BY_USER("/posts?userId="),
+  ALL_POSTS("/posts/");
+
+  private final String path;
+
+  Endpoint(String path) {
+    this.path = path;
+  }
+
+  /**
+   * @return the path of the endpoint without the id
+   */
+  public String path() {
+    return path;
+  }
+}
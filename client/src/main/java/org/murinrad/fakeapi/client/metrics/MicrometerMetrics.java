@@ -0,0 +1,144 @@
+package org.murinrad.fakeapi.client.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.murinrad.fakeapi.client.transport.Transport;
+
+/**
+ * Records the client metrics into a Micrometer registry.
+ * Requires io.micrometer:micrometer-core on the classpath, the client does not depend on it otherwise.
+ * <ul>
+ *   <li>{@code fakeapi.client.requests} timer of the requests, tagged by endpoint</li>
+ *   <li>{@code fakeapi.client.errors} counter of failed requests, tagged by endpoint and status,
+ *   {@code IO_ERROR} for requests without a response</li>
+ *   <li>{@code fakeapi.client.retries} and {@code fakeapi.client.hedges} counters, tagged by endpoint</li>
+ *   <li>{@code fakeapi.client.response.size} distribution of the decoded body sizes, tagged by endpoint</li>
+ *   <li>{@code fakeapi.client.response.wire.size} distribution of the body sizes as received,
+ *   compressed when the server compressed them, tagged by endpoint</li>
+ *   <li>{@code fakeapi.client.parse} timer of reading and deserializing the bodies, tagged by endpoint</li>
+ *   <li>{@code fakeapi.client.calls.running} and {@code fakeapi.client.calls.queued} gauges of the transport</li>
+ * </ul>
+ * All meters except the error counters are registered up front, the error counter of a status
+ * is registered on its first occurrence, so recording allocates nothing once the meters exist.
+ * The gauges follow the first client bound, clients sharing a registry need distinct prefixes.
+ */
+public final class MicrometerMetrics implements ClientMetrics {
+
+  private static final int MAX_STATUS = 600;
+  private static final int IO_ERROR = 0;
+
+  private final MeterRegistry registry;
+  private final String prefix;
+  private final Map<Endpoint, Timer> requestTimers = new EnumMap<>(Endpoint.class);
+  private final Map<Endpoint, Timer> parseTimers = new EnumMap<>(Endpoint.class);
+  private final Map<Endpoint, DistributionSummary> bodySizes = new EnumMap<>(Endpoint.class);
+  private final Map<Endpoint, DistributionSummary> wireSizes = new EnumMap<>(Endpoint.class);
+  private final Map<Endpoint, Counter> retries = new EnumMap<>(Endpoint.class);
+  private final Map<Endpoint, Counter> hedges = new EnumMap<>(Endpoint.class);
+  private final Map<Endpoint, AtomicReferenceArray<Counter>> errorCounters = new EnumMap<>(Endpoint.class);
+
+  /**
+   * @param registry the registry to record into
+   */
+  public MicrometerMetrics(MeterRegistry registry) {
+    this(registry, "fakeapi.client");
+  }
+
+  /**
+   * @param registry the registry to record into
+   * @param prefix the prefix of the meter names
+   */
+  public MicrometerMetrics(MeterRegistry registry, String prefix) {
+    this.registry = registry;
+    this.prefix = prefix;
+    for (Endpoint endpoint : Endpoint.values()) {
+      requestTimers.put(endpoint, Timer.builder(prefix + ".requests")
+          .tag("endpoint", endpoint.path())
+          .publishPercentileHistogram()
+          .register(registry));
+      parseTimers.put(endpoint, Timer.builder(prefix + ".parse")
+          .tag("endpoint", endpoint.path())
+          .register(registry));
+      bodySizes.put(endpoint, DistributionSummary.builder(prefix + ".response.size")
+          .tag("endpoint", endpoint.path())
+          .baseUnit("bytes")
+          .register(registry));
+      wireSizes.put(endpoint, DistributionSummary.builder(prefix + ".response.wire.size")
+          .tag("endpoint", endpoint.path())
+          .baseUnit("bytes")
+          .register(registry));
+      retries.put(endpoint, Counter.builder(prefix + ".retries")
+          .tag("endpoint", endpoint.path())
+          .register(registry));
+      hedges.put(endpoint, Counter.builder(prefix + ".hedges")
+          .tag("endpoint", endpoint.path())
+          .register(registry));
+      errorCounters.put(endpoint, new AtomicReferenceArray<>(MAX_STATUS));
+    }
+  }
+
+  @Override
+  public void bindTransport(Transport transport) {
+    Gauge.builder(prefix + ".calls.running", transport, Transport::runningCalls)
+        .register(registry);
+    Gauge.builder(prefix + ".calls.queued", transport, Transport::queuedCalls)
+        .register(registry);
+  }
+
+  @Override
+  public void requestCompleted(Endpoint endpoint, int statusCode, long durationNanos) {
+    requestTimers.get(endpoint).record(durationNanos, TimeUnit.NANOSECONDS);
+    if (statusCode < 200 || statusCode >= 400) {
+      errorCounter(endpoint, statusCode > IO_ERROR && statusCode < MAX_STATUS ? statusCode : IO_ERROR)
+          .increment();
+    }
+  }
+
+  @Override
+  public void requestFailed(Endpoint endpoint, long durationNanos) {
+    requestTimers.get(endpoint).record(durationNanos, TimeUnit.NANOSECONDS);
+    errorCounter(endpoint, IO_ERROR).increment();
+  }
+
+  @Override
+  public void requestRetried(Endpoint endpoint, int retry) {
+    retries.get(endpoint).increment();
+  }
+
+  @Override
+  public void requestHedged(Endpoint endpoint) {
+    hedges.get(endpoint).increment();
+  }
+
+  @Override
+  public void bodyRead(Endpoint endpoint, long bytes, long parseNanos) {
+    bodyRead(endpoint, bytes, bytes, parseNanos);
+  }
+
+  @Override
+  public void bodyRead(Endpoint endpoint, long wireBytes, long bytes, long parseNanos) {
+    wireSizes.get(endpoint).record(wireBytes);
+    bodySizes.get(endpoint).record(bytes);
+    parseTimers.get(endpoint).record(parseNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Counter errorCounter(Endpoint endpoint, int status) {
+    AtomicReferenceArray<Counter> counters = errorCounters.get(endpoint);
+    Counter counter = counters.get(status);
+    if (counter == null) {
+      counter = Counter.builder(prefix + ".errors")
+          .tag("endpoint", endpoint.path())
+          .tag("status", status == IO_ERROR ? "IO_ERROR" : Integer.toString(status))
+          .register(registry);
+      counters.set(status, counter);
+    }
+    return counter;
+  }
+}
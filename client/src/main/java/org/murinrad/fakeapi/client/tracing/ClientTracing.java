@@ -0,0 +1,54 @@
+package org.murinrad.fakeapi.client.tracing;
+
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+import org.murinrad.fakeapi.client.transport.TransportRequest;
+
+/**
+ * SPI the client traces its overviews and requests with.
+ * Every overview gets a span, every request sent for it a child span, including each retry,
+ * hedge and failover attempt. The context of the caller is captured when an overview starts and
+ * is current while its future completes, so the caller's continuations run in it even though
+ * they run on the transport threads.
+ * Spans are started on the caller thread and ended on the transport threads, implementations
+ * must be thread safe and should not block.
+ *
+ * @see OpenTelemetryTracing
+ */
+public interface ClientTracing {
+
+  /**
+   * Tracing that records nothing, the default of the client
+   */
+  ClientTracing NOOP = new ClientTracing() {
+  };
+
+  /**
+   * @return the context of the calling thread, e.g. its current span or logging context
+   */
+  default TraceContext capture() {
+    return TraceContext.EMPTY;
+  }
+
+  /**
+   * Called on the caller thread when an overview is requested
+   *
+   * @param parent the context captured from the caller
+   * @param userId the id of the user
+   * @return the span of the overview
+   */
+  default TraceSpan startOverview(TraceContext parent, long userId) {
+    return TraceSpan.NOOP;
+  }
+
+  /**
+   * Called when a request is about to be queued, before the limiter and the transport
+   *
+   * @param parent the context the request was issued in, the overview span for overviews
+   * @param endpoint the endpoint called
+   * @param request the request
+   * @return the span of the request
+   */
+  default TraceSpan startRequest(TraceContext parent, Endpoint endpoint, TransportRequest request) {
+    return TraceSpan.NOOP;
+  }
+}
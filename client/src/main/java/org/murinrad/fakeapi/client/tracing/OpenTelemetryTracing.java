@@ -0,0 +1,170 @@
+package org.murinrad.fakeapi.client.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+import org.murinrad.fakeapi.client.transport.TransportRequest;
+
+/**
+ * Traces the client with OpenTelemetry.
+ * Requires io.opentelemetry:opentelemetry-api on the classpath, the client does not depend on it otherwise.
+ * <ul>
+ *   <li>{@code fakeapi.overview} internal span per overview, with the {@code fakeapi.user_id} attribute</li>
+ *   <li>a client span per request named after its method, with the {@code http.method}, {@code http.url},
+ *   {@code http.status_code} and {@code fakeapi.endpoint} attributes and the {@code sent} and
+ *   {@code response} events. The {@code fakeapi.queue_ms}, {@code fakeapi.network_ms} and
+ *   {@code fakeapi.parse_ms} attributes split its duration</li>
+ * </ul>
+ * Requests carry the span in the headers of the propagators of the OpenTelemetry instance,
+ * W3C trace context when configured with the defaults.
+ */
+public final class OpenTelemetryTracing implements ClientTracing {
+
+  private static final String INSTRUMENTATION = "org.murinrad.fakeapi.client";
+  private static final AttributeKey<Long> USER_ID = AttributeKey.longKey("fakeapi.user_id");
+  private static final AttributeKey<String> ENDPOINT = AttributeKey.stringKey("fakeapi.endpoint");
+  private static final AttributeKey<String> HTTP_METHOD = AttributeKey.stringKey("http.method");
+  private static final AttributeKey<String> HTTP_URL = AttributeKey.stringKey("http.url");
+  private static final AttributeKey<Long> HTTP_STATUS = AttributeKey.longKey("http.status_code");
+  private static final AttributeKey<Double> QUEUE_MS = AttributeKey.doubleKey("fakeapi.queue_ms");
+  private static final AttributeKey<Double> NETWORK_MS = AttributeKey.doubleKey("fakeapi.network_ms");
+  private static final AttributeKey<Double> PARSE_MS = AttributeKey.doubleKey("fakeapi.parse_ms");
+  private static final AttributeKey<Boolean> CANCELLED = AttributeKey.booleanKey("fakeapi.cancelled");
+  private static final TextMapSetter<BiConsumer<String, String>> SETTER = BiConsumer::accept;
+
+  private final Tracer tracer;
+  private final TextMapPropagator propagator;
+
+  /**
+   * @param openTelemetry the OpenTelemetry instance providing the tracer and the propagators
+   */
+  public OpenTelemetryTracing(OpenTelemetry openTelemetry) {
+    this.tracer = openTelemetry.getTracer(INSTRUMENTATION);
+    this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+  }
+
+  @Override
+  public TraceContext capture() {
+    return new OtelContext(Context.current());
+  }
+
+  @Override
+  public TraceSpan startOverview(TraceContext parent, long userId) {
+    Context context = unwrap(parent);
+    Span span = tracer.spanBuilder("fakeapi.overview")
+        .setParent(context)
+        .setSpanKind(SpanKind.INTERNAL)
+        .setAttribute(USER_ID, userId)
+        .startSpan();
+    return new OtelSpan(context, span, false);
+  }
+
+  @Override
+  public TraceSpan startRequest(TraceContext parent, Endpoint endpoint, TransportRequest request) {
+    Context context = unwrap(parent);
+    Span span = tracer.spanBuilder(request.getMethod())
+        .setParent(context)
+        .setSpanKind(SpanKind.CLIENT)
+        .setAttribute(ENDPOINT, endpoint.path())
+        .setAttribute(HTTP_METHOD, request.getMethod())
+        .setAttribute(HTTP_URL, request.getUrl())
+        .startSpan();
+    return new OtelSpan(context, span, true);
+  }
+
+  private static Context unwrap(TraceContext context) {
+    return context instanceof OtelContext ? ((OtelContext) context).context : Context.current();
+  }
+
+  private static double millis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private static final class OtelContext implements TraceContext {
+
+    private final Context context;
+
+    private OtelContext(Context context) {
+      this.context = context;
+    }
+
+    @Override
+    public TraceScope makeCurrent() {
+      Scope scope = context.makeCurrent();
+      return scope::close;
+    }
+  }
+
+  private final class OtelSpan implements TraceSpan {
+
+    private final Context context;
+    private final Span span;
+    private final boolean request;
+    private final long start = System.nanoTime();
+    private volatile long sent;
+    private volatile long received;
+
+    /**
+     * @param parent the context the span was started in
+     * @param request true for the span of a request, which records its phases
+     */
+    private OtelSpan(Context parent, Span span, boolean request) {
+      this.context = parent.with(span);
+      this.span = span;
+      this.request = request;
+    }
+
+    @Override
+    public TraceContext context() {
+      return new OtelContext(context);
+    }
+
+    @Override
+    public void injectHeaders(BiConsumer<String, String> headers) {
+      propagator.inject(context, headers, SETTER);
+    }
+
+    @Override
+    public void sent() {
+      sent = System.nanoTime();
+      span.addEvent("sent");
+    }
+
+    @Override
+    public void responseReceived(int statusCode) {
+      received = System.nanoTime();
+      span.addEvent("response");
+      span.setAttribute(HTTP_STATUS, statusCode);
+    }
+
+    @Override
+    public void end(Throwable error) {
+      long end = System.nanoTime();
+      if (request && sent != 0) {
+        span.setAttribute(QUEUE_MS, millis(sent - start));
+        if (received != 0) {
+          span.setAttribute(NETWORK_MS, millis(received - sent));
+          span.setAttribute(PARSE_MS, millis(end - received));
+        }
+      }
+      if (error instanceof CancellationException) {
+        span.setAttribute(CANCELLED, true);
+      } else if (error != null) {
+        span.recordException(error);
+        span.setStatus(StatusCode.ERROR);
+      }
+      span.end();
+    }
+  }
+}
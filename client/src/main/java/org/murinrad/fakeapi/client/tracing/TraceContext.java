@@ -0,0 +1,19 @@
+package org.murinrad.fakeapi.client.tracing;
+
+/**
+ * A context captured on one thread to be made current on another
+ */
+public interface TraceContext {
+
+  /**
+   * The context of a thread without tracing
+   */
+  TraceContext EMPTY = () -> TraceScope.NOOP;
+
+  /**
+   * Makes the context current on the calling thread
+   *
+   * @return the scope restoring the previous context when closed, on the same thread
+   */
+  TraceScope makeCurrent();
+}
@@ -0,0 +1,16 @@
+package org.murinrad.fakeapi.client.tracing;
+
+/**
+ * A context made current on a thread, closing it restores the previous one
+ */
+public interface TraceScope extends AutoCloseable {
+
+  /**
+   * Scope of the empty context, closing it does nothing
+   */
+  TraceScope NOOP = () -> {
+  };
+
+  @Override
+  void close();
+}
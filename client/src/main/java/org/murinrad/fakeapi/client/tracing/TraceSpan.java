@@ -0,0 +1,55 @@
+package org.murinrad.fakeapi.client.tracing;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Span of an overview or of a single request.
+ * A request span is started when the request is issued, {@link #sent()} marks the end of the
+ * wait for the limiter, {@link #responseReceived(int)} the end of the transport and network time
+ * and {@link #end(Throwable)} the end of parsing the body.
+ */
+public interface TraceSpan {
+
+  /**
+   * Span recording nothing
+   */
+  TraceSpan NOOP = new TraceSpan() {
+  };
+
+  /**
+   * @return the context with this span current, the parent of the spans started within it
+   */
+  default TraceContext context() {
+    return TraceContext.EMPTY;
+  }
+
+  /**
+   * Writes the headers propagating this span to the server
+   *
+   * @param headers receives the name and the value of every header
+   */
+  default void injectHeaders(BiConsumer<String, String> headers) {
+  }
+
+  /**
+   * Called when the request is handed to the transport, after waiting for the limiter
+   */
+  default void sent() {
+  }
+
+  /**
+   * Called when the response headers arrive
+   *
+   * @param statusCode the HTTP status of the response
+   */
+  default void responseReceived(int statusCode) {
+  }
+
+  /**
+   * Ends the span, called once
+   *
+   * @param error the failure of the overview or the request, null when it succeeded
+   */
+  default void end(Throwable error) {
+  }
+}
@@ -0,0 +1,18 @@
+package org.murinrad.fakeapi.client.transport;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown by a transport when the connection to the server could not be established in time.
+ * Nothing of the request was sent, unlike a timeout while waiting for the response.
+ */
+public class ConnectTimeoutException extends SocketTimeoutException {
+
+  /**
+   * @param cause the timeout reported by the socket
+   */
+  public ConnectTimeoutException(SocketTimeoutException cause) {
+    super(cause.getMessage());
+    initCause(cause);
+  }
+}
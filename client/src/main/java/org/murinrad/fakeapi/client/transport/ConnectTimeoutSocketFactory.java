@@ -0,0 +1,67 @@
+package org.murinrad.fakeapi.client.transport;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import javax.net.SocketFactory;
+
+/**
+ * Creates plain sockets whose connect timeouts are reported as {@link ConnectTimeoutException}.
+ * OkHttp 2 reports no connection events, the socket it connects is the one place the connect
+ * phase can be told apart from waiting for the response.
+ */
+final class ConnectTimeoutSocketFactory extends SocketFactory {
+
+  @Override
+  public Socket createSocket() {
+    return new ConnectTimeoutSocket();
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    Socket socket = createSocket();
+    socket.connect(new InetSocketAddress(host, port));
+    return socket;
+  }
+
+  @Override
+  public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+    Socket socket = createSocket();
+    socket.bind(new InetSocketAddress(localHost, localPort));
+    socket.connect(new InetSocketAddress(host, port));
+    return socket;
+  }
+
+  @Override
+  public Socket createSocket(InetAddress host, int port) throws IOException {
+    Socket socket = createSocket();
+    socket.connect(new InetSocketAddress(host, port));
+    return socket;
+  }
+
+  @Override
+  public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+      throws IOException {
+    Socket socket = createSocket();
+    socket.bind(new InetSocketAddress(localAddress, localPort));
+    socket.connect(new InetSocketAddress(address, port));
+    return socket;
+  }
+
+  private static final class ConnectTimeoutSocket extends Socket {
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+      try {
+        super.connect(endpoint, timeout);
+      } catch (ConnectTimeoutException e) {
+        throw e;
+      } catch (SocketTimeoutException e) {
+        throw new ConnectTimeoutException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package org.murinrad.fakeapi.client.transport;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Dispatcher;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport backed by OkHttp 2, the default transport of the client.
+ * For transport details see OKHttp documentation.
+ */
+public final class OkHttp2Transport implements Transport {
+
+  private final OkHttpClient client;
+  private final Dispatcher dispatcher;
+
+  /**
+   * Creates the transport with the default OkHttp settings
+   */
+  public OkHttp2Transport() {
+    this(new TransportSettings.Builder().build());
+  }
+
+  /**
+   * @param maxRequests The maximum amount of concurrent requests
+   * @param maxRequestsPerHost The maximum amount of concurrent requests per host
+   * @see Dispatcher
+   */
+  public OkHttp2Transport(int maxRequests, int maxRequestsPerHost) {
+    this(new TransportSettings.Builder().maxRequests(maxRequests)
+        .maxRequestsPerHost(maxRequestsPerHost).build());
+  }
+
+  /**
+   * @param settings the dispatcher, connection pool and timeout settings
+   */
+  public OkHttp2Transport(TransportSettings settings) {
+    this.dispatcher = settings.getExecutor() == null ? new Dispatcher()
+        : new Dispatcher(settings.getExecutor());
+    dispatcher.setMaxRequestsPerHost(settings.getMaxRequestsPerHost());
+    dispatcher.setMaxRequests(settings.getMaxRequests());
+    this.client = new OkHttpClient();
+    client.setDispatcher(dispatcher);
+    // tells connect timeouts apart, proxies connected through SOCKS keep reporting plain timeouts
+    client.setSocketFactory(new ConnectTimeoutSocketFactory());
+    client.setConnectionPool(new ConnectionPool(settings.getMaxIdleConnections(),
+        settings.getKeepAlive().toMillis()));
+    client.setConnectTimeout(settings.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    client.setReadTimeout(settings.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public TransportCall newCall(TransportRequest request) {
+    Request.Builder builder = new Request.Builder().url(request.getUrl())
+        .method(request.getMethod(), null);
+    for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+      builder.header(header.getKey(), header.getValue());
+    }
+    return new OkHttp2Call(request, client.newCall(builder.build()));
+  }
+
+  @Override
+  public int maxConcurrentRequests() {
+    return Math.min(dispatcher.getMaxRequests(), dispatcher.getMaxRequestsPerHost());
+  }
+
+  @Override
+  public int runningCalls() {
+    return dispatcher.getRunningCallCount();
+  }
+
+  @Override
+  public int queuedCalls() {
+    return dispatcher.getQueuedCallCount();
+  }
+
+  /**
+   * Shuts the dispatcher down. Immediately releases executor threads.
+   */
+  @Override
+  public void close() {
+    if (!dispatcher.getExecutorService().isShutdown()) {
+      dispatcher.getExecutorService().shutdown();
+    }
+  }
+
+  private static final class OkHttp2Call implements TransportCall {
+
+    private final TransportRequest request;
+    private final Call call;
+
+    private OkHttp2Call(TransportRequest request, Call call) {
+      this.request = request;
+      this.call = call;
+    }
+
+    @Override
+    public TransportRequest request() {
+      return request;
+    }
+
+    @Override
+    public TransportResponse execute() throws IOException {
+      return new OkHttp2Response(call.execute());
+    }
+
+    @Override
+    public void enqueue(TransportCallback callback) {
+      call.enqueue(new Callback() {
+        @Override
+        public void onFailure(Request failed, IOException e) {
+          callback.onFailure(request, e);
+        }
+
+        @Override
+        public void onResponse(Response response) {
+          callback.onResponse(new OkHttp2Response(response));
+        }
+      });
+    }
+
+    @Override
+    public void cancel() {
+      call.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return call.isCanceled();
+    }
+  }
+
+  private static final class OkHttp2Response implements TransportResponse {
+
+    private final Response response;
+
+    private OkHttp2Response(Response response) {
+      this.response = response;
+    }
+
+    @Override
+    public int code() {
+      return response.code();
+    }
+
+    @Override
+    public String message() {
+      return response.message();
+    }
+
+    @Override
+    public String header(String name) {
+      return response.header(name);
+    }
+
+    @Override
+    public InputStream body() throws IOException {
+      return response.body().byteStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+      ResponseBody body = response.body();
+      if (body != null) {
+        body.close();
+      }
+    }
+  }
+}
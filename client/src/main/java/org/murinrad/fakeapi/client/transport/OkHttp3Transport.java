@@ -0,0 +1,248 @@
+package org.murinrad.fakeapi.client.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Transport backed by OkHttp 3, multiplexing requests over HTTP/2 where the server supports it.
+ * Over TLS HTTP/2 is negotiated with ALPN, plain text servers need prior knowledge of HTTP/2.
+ * Requires the optional com.squareup.okhttp3:okhttp dependency on the classpath.
+ */
+public final class OkHttp3Transport implements Transport {
+
+  private final OkHttpClient client;
+
+  /**
+   * Creates the transport negotiating HTTP/2 over TLS, plain text uses HTTP/1.1
+   */
+  public OkHttp3Transport() {
+    this(new TransportSettings.Builder().build());
+  }
+
+  /**
+   * Creates the transport negotiating HTTP/2 over TLS, plain text uses HTTP/1.1
+   *
+   * @param settings the dispatcher, connection pool and timeout settings
+   */
+  public OkHttp3Transport(TransportSettings settings) {
+    this(settings, false);
+  }
+
+  /**
+   * @param http2PriorKnowledge send plain text requests as HTTP/2 without negotiation (h2c),
+   *     only for servers known to support it
+   * @param maxRequests The maximum amount of concurrent requests
+   * @param maxRequestsPerHost The maximum amount of concurrent requests per host,
+   *     with HTTP/2 these share a single connection
+   */
+  public OkHttp3Transport(boolean http2PriorKnowledge, int maxRequests, int maxRequestsPerHost) {
+    this(new TransportSettings.Builder().maxRequests(maxRequests)
+        .maxRequestsPerHost(maxRequestsPerHost).build(), http2PriorKnowledge);
+  }
+
+  /**
+   * @param settings the dispatcher, connection pool and timeout settings
+   * @param http2PriorKnowledge send plain text requests as HTTP/2 without negotiation (h2c),
+   *     only for servers known to support it
+   */
+  public OkHttp3Transport(TransportSettings settings, boolean http2PriorKnowledge) {
+    Dispatcher dispatcher = settings.getExecutor() == null ? new Dispatcher()
+        : new Dispatcher(settings.getExecutor());
+    dispatcher.setMaxRequests(settings.getMaxRequests());
+    dispatcher.setMaxRequestsPerHost(settings.getMaxRequestsPerHost());
+    this.client = new OkHttpClient.Builder()
+        .dispatcher(dispatcher)
+        .connectionPool(new ConnectionPool(settings.getMaxIdleConnections(),
+            settings.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS))
+        .connectTimeout(settings.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+        .readTimeout(settings.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)
+        .protocols(http2PriorKnowledge ? Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)
+            : Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+        .eventListener(new ConnectFailureListener())
+        .build();
+  }
+
+  @Override
+  public TransportCall newCall(TransportRequest request) {
+    Request.Builder builder = new Request.Builder().url(request.getUrl())
+        .method(request.getMethod(), null)
+        .tag(ConnectFailures.class, new ConnectFailures());
+    for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+      builder.header(header.getKey(), header.getValue());
+    }
+    return new OkHttp3Call(request, client.newCall(builder.build()));
+  }
+
+  @Override
+  public int maxConcurrentRequests() {
+    return Math.min(client.dispatcher().getMaxRequests(), client.dispatcher().getMaxRequestsPerHost());
+  }
+
+  @Override
+  public int runningCalls() {
+    return client.dispatcher().runningCallsCount();
+  }
+
+  @Override
+  public int queuedCalls() {
+    return client.dispatcher().queuedCallsCount();
+  }
+
+  /**
+   * Shuts the dispatcher down and evicts the pooled connections
+   */
+  @Override
+  public void close() {
+    client.dispatcher().executorService().shutdown();
+    client.connectionPool().evictAll();
+  }
+
+  private static final class OkHttp3Call implements TransportCall {
+
+    private final TransportRequest request;
+    private final Call call;
+
+    private OkHttp3Call(TransportRequest request, Call call) {
+      this.request = request;
+      this.call = call;
+    }
+
+    @Override
+    public TransportRequest request() {
+      return request;
+    }
+
+    @Override
+    public TransportResponse execute() throws IOException {
+      try {
+        return new OkHttp3Response(call.execute());
+      } catch (IOException e) {
+        throw connectPhase(call, e);
+      }
+    }
+
+    @Override
+    public void enqueue(TransportCallback callback) {
+      call.enqueue(new Callback() {
+        @Override
+        public void onFailure(Call failed, IOException e) {
+          callback.onFailure(request, connectPhase(failed, e));
+        }
+
+        @Override
+        public void onResponse(Call completed, Response response) {
+          callback.onResponse(new OkHttp3Response(response));
+        }
+      });
+    }
+
+    @Override
+    public void cancel() {
+      call.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return call.isCanceled();
+    }
+  }
+
+  /**
+   * @return the failure of the call, a connect timeout when the listener saw it as a failed connect
+   */
+  private static IOException connectPhase(Call call, IOException e) {
+    ConnectFailures failures = call.request().tag(ConnectFailures.class);
+    if (e instanceof SocketTimeoutException && failures != null && failures.contains(e)) {
+      return new ConnectTimeoutException((SocketTimeoutException) e);
+    }
+    return e;
+  }
+
+  /**
+   * The failed connects of a call, a route may be retried before the call fails
+   */
+  private static final class ConnectFailures {
+
+    private final List<IOException> failures = new CopyOnWriteArrayList<>();
+
+    void add(IOException e) {
+      failures.add(e);
+    }
+
+    boolean contains(IOException e) {
+      for (IOException failure : failures) {
+        if (failure == e) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class ConnectFailureListener extends EventListener {
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol, IOException e) {
+      ConnectFailures failures = call.request().tag(ConnectFailures.class);
+      if (failures != null) {
+        failures.add(e);
+      }
+    }
+  }
+
+  private static final class OkHttp3Response implements TransportResponse {
+
+    private final Response response;
+
+    private OkHttp3Response(Response response) {
+      this.response = response;
+    }
+
+    @Override
+    public int code() {
+      return response.code();
+    }
+
+    @Override
+    public String message() {
+      return response.message();
+    }
+
+    @Override
+    public String header(String name) {
+      return response.header(name);
+    }
+
+    @Override
+    public InputStream body() {
+      return response.body().byteStream();
+    }
+
+    @Override
+    public void close() {
+      ResponseBody body = response.body();
+      if (body != null) {
+        body.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package org.murinrad.fakeapi.client.transport;
+
+/**
+ * SPI of the HTTP layer the client runs its requests on.
+ * Implementations own their connections and threads, the client closes
+ * the transport when it is closed itself.
+ *
+ * @see OkHttp2Transport
+ * @see OkHttp3Transport
+ */
+public interface Transport extends AutoCloseable {
+
+  /**
+   * Prepares a call of the request, nothing is sent until the call is executed or enqueued
+   *
+   * @param request the request
+   * @return the call
+   */
+  TransportCall newCall(TransportRequest request);
+
+  /**
+   * The amount of requests the transport runs at once before it starts queueing them.
+   * The client uses it to cap its own in-flight requests.
+   *
+   * @return the maximum amount of concurrent requests
+   */
+  int maxConcurrentRequests();
+
+  /**
+   * @return the amount of calls currently sent over the network, 0 when the transport does not track them
+   */
+  default int runningCalls() {
+    return 0;
+  }
+
+  /**
+   * @return the amount of enqueued calls waiting for a free slot, 0 when the transport does not track them
+   */
+  default int queuedCalls() {
+    return 0;
+  }
+
+  /**
+   * Releases the threads and connections of the transport, further calls are rejected
+   */
+  @Override
+  void close();
+}
@@ -0,0 +1,34 @@
+package org.murinrad.fakeapi.client.transport;
+
+import java.io.IOException;
+
+/**
+ * A single request ready to be executed, a call can be executed or enqueued only once
+ */
+public interface TransportCall {
+
+  TransportRequest request();
+
+  /**
+   * Executes the call on the calling thread
+   *
+   * @return the response, the caller has to close it
+   * @throws IOException if the request could not be executed,
+   *     a {@link ConnectTimeoutException} when the connection was not established in time
+   */
+  TransportResponse execute() throws IOException;
+
+  /**
+   * Schedules the call on the threads of the transport
+   *
+   * @param callback notified once with the response or the failure
+   */
+  void enqueue(TransportCallback callback);
+
+  /**
+   * Cancels the call, a call in flight fails with an {@link IOException}
+   */
+  void cancel();
+
+  boolean isCanceled();
+}
@@ -0,0 +1,24 @@
+package org.murinrad.fakeapi.client.transport;
+
+import java.io.IOException;
+
+/**
+ * Receives the outcome of an enqueued {@link TransportCall}
+ */
+public interface TransportCallback {
+
+  /**
+   * Called when the request could not be executed
+   *
+   * @param request the failed request
+   * @param e the cause, a {@link ConnectTimeoutException} when the connection was not established in time
+   */
+  void onFailure(TransportRequest request, IOException e);
+
+  /**
+   * Called with the response of any status, the callback has to close it
+   *
+   * @param response the response
+   */
+  void onResponse(TransportResponse response);
+}
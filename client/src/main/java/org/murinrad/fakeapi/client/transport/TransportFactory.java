@@ -0,0 +1,12 @@
+package org.murinrad.fakeapi.client.transport;
+
+/**
+ * Creates a transport from the settings collected by the client builder,
+ * eg: {@code OkHttp3Transport::new}
+ */
+@FunctionalInterface
+public interface TransportFactory {
+
+  Transport create(TransportSettings settings);
+
+}
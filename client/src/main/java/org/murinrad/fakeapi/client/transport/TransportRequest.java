@@ -0,0 +1,88 @@
+package org.murinrad.fakeapi.client.transport;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable HTTP request
+ */
+public final class TransportRequest {
+
+  private final String method;
+  private final String url;
+  private final Map<String, String> headers;
+
+  private TransportRequest(Builder builder) {
+    this.method = builder.method;
+    this.url = builder.url;
+    this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(builder.headers));
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * @return a builder initialized with this request
+   */
+  public Builder newBuilder() {
+    Builder builder = new Builder().method(method).url(url);
+    builder.headers.putAll(headers);
+    return builder;
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + url;
+  }
+
+  public static final class Builder {
+
+    private String method = "GET";
+    private String url;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+
+    public Builder get() {
+      return method("GET");
+    }
+
+    public Builder head() {
+      return method("HEAD");
+    }
+
+    public Builder method(String method) {
+      this.method = method;
+      return this;
+    }
+
+    public Builder url(String url) {
+      this.url = url;
+      return this;
+    }
+
+    public Builder header(String name, String value) {
+      headers.put(name, value);
+      return this;
+    }
+
+    /**
+     * @return the request
+     * @throws IllegalStateException when no URL was set
+     */
+    public TransportRequest build() {
+      if (url == null) {
+        throw new IllegalStateException("URL must be set");
+      }
+      return new TransportRequest(this);
+    }
+  }
+}
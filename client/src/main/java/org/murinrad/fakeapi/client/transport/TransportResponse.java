@@ -0,0 +1,37 @@
+package org.murinrad.fakeapi.client.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An HTTP response with a streamed body, closing it releases the connection
+ */
+public interface TransportResponse extends Closeable {
+
+  int code();
+
+  /**
+   * @return the status message or null when the server sent none
+   */
+  String message();
+
+  /**
+   * @param name the case insensitive header name
+   * @return the last value of the header or null when absent
+   */
+  String header(String name);
+
+  /**
+   * @return the body stream, it can be consumed once
+   * @throws IOException if the body cannot be opened
+   */
+  InputStream body() throws IOException;
+
+  default boolean isSuccessful() {
+    return code() >= 200 && code() < 300;
+  }
+
+  @Override
+  void close() throws IOException;
+}
@@ -0,0 +1,148 @@
+package org.murinrad.fakeapi.client.transport;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Connection and concurrency settings shared by the built-in transports.
+ * The defaults are the OkHttp defaults.
+ */
+public final class TransportSettings {
+
+  private final int maxRequests;
+  private final int maxRequestsPerHost;
+  private final int maxIdleConnections;
+  private final Duration keepAlive;
+  private final Duration connectTimeout;
+  private final Duration readTimeout;
+  private final ExecutorService executor;
+
+  private TransportSettings(Builder builder) {
+    this.maxRequests = builder.maxRequests;
+    this.maxRequestsPerHost = builder.maxRequestsPerHost;
+    this.maxIdleConnections = builder.maxIdleConnections;
+    this.keepAlive = builder.keepAlive;
+    this.connectTimeout = builder.connectTimeout;
+    this.readTimeout = builder.readTimeout;
+    this.executor = builder.executor;
+  }
+
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  public int getMaxRequestsPerHost() {
+    return maxRequestsPerHost;
+  }
+
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
+  public Duration getKeepAlive() {
+    return keepAlive;
+  }
+
+  public Duration getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public Duration getReadTimeout() {
+    return readTimeout;
+  }
+
+  /**
+   * @return the executor running enqueued calls or null for the transport's own pool
+   */
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  @Override
+  public String toString() {
+    String sb = "{" + "maxRequests: " + getMaxRequests() + ", "
+        + "maxRequestsPerHost: " + getMaxRequestsPerHost() + ", "
+        + "maxIdleConnections: " + getMaxIdleConnections() + ", "
+        + "keepAlive: " + getKeepAlive() + ", "
+        + "connectTimeout: " + getConnectTimeout() + ", "
+        + "readTimeout: " + getReadTimeout()
+        + "}";
+    return sb;
+  }
+
+  public static final class Builder {
+
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 5;
+    private int maxIdleConnections = 5;
+    private Duration keepAlive = Duration.ofMinutes(5);
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration readTimeout = Duration.ofSeconds(10);
+    private ExecutorService executor;
+
+    public Builder maxRequests(int maxRequests) {
+      this.maxRequests = requirePositive(maxRequests, "maxRequests");
+      return this;
+    }
+
+    public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+      this.maxRequestsPerHost = requirePositive(maxRequestsPerHost, "maxRequestsPerHost");
+      return this;
+    }
+
+    /**
+     * @param maxIdleConnections the amount of idle connections kept in the pool
+     */
+    public Builder maxIdleConnections(int maxIdleConnections) {
+      if (maxIdleConnections < 0) {
+        throw new IllegalArgumentException("maxIdleConnections must not be negative");
+      }
+      this.maxIdleConnections = maxIdleConnections;
+      return this;
+    }
+
+    /**
+     * @param keepAlive how long an idle connection is kept in the pool
+     */
+    public Builder keepAlive(Duration keepAlive) {
+      this.keepAlive = requireNonNegative(keepAlive, "keepAlive");
+      return this;
+    }
+
+    public Builder connectTimeout(Duration connectTimeout) {
+      this.connectTimeout = requireNonNegative(connectTimeout, "connectTimeout");
+      return this;
+    }
+
+    public Builder readTimeout(Duration readTimeout) {
+      this.readTimeout = requireNonNegative(readTimeout, "readTimeout");
+      return this;
+    }
+
+    /**
+     * @param executor the executor running enqueued calls, it is shut down with the transport
+     */
+    public Builder executor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    public TransportSettings build() {
+      return new TransportSettings(this);
+    }
+
+    private static int requirePositive(int value, String name) {
+      if (value <= 0) {
+        throw new IllegalArgumentException(name + " must be positive");
+      }
+      return value;
+    }
+
+    private static Duration requireNonNegative(Duration value, String name) {
+      if (value == null || value.isNegative()) {
+        throw new IllegalArgumentException(name + " must not be negative");
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package org.murinrad.fakeapi.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executor of {@link ExecutionMode#VIRTUAL_THREADS}, Java 21 variant
+ */
+final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return an executor starting a new virtual thread per task
+   */
+  static ExecutorService newThreadPerTaskExecutor() {
+    return Executors.newVirtualThreadPerTaskExecutor();
+  }
+}
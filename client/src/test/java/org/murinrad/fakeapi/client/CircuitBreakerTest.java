@@ -0,0 +1,95 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.CircuitBreaker.Permit;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+
+public class CircuitBreakerTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final List<CircuitState> transitions = new ArrayList<>();
+
+  private CircuitBreaker createBreaker() {
+    return new CircuitBreaker(Endpoint.USER, new CircuitBreakerSettings.Builder()
+        .failureRateThreshold(0.5)
+        .slidingWindow(4, 4)
+        .openDuration(Duration.ofNanos(100))
+        .halfOpenProbes(2)
+        .listener((endpoint, from, to) -> transitions.add(to))
+        .build(), now::get);
+  }
+
+  private void open(CircuitBreaker breaker) {
+    for (int i = 0; i < 4; i++) {
+      breaker.onResult(breaker.tryAcquire(), i % 2 == 0);
+    }
+  }
+
+  @Test
+  public void testOpensAtThreshold() {
+    CircuitBreaker breaker = createBreaker();
+    breaker.onResult(breaker.tryAcquire(), true);
+    breaker.onResult(breaker.tryAcquire(), true);
+    breaker.onResult(breaker.tryAcquire(), false);
+    Assert.assertEquals(CircuitState.CLOSED, breaker.getState());
+    breaker.onResult(breaker.tryAcquire(), false);
+    Assert.assertEquals(CircuitState.OPEN, breaker.getState());
+    Assert.assertEquals(Permit.REJECTED, breaker.tryAcquire());
+  }
+
+  @Test
+  public void testSlidingWindowForgetsOldFailures() {
+    CircuitBreaker breaker = createBreaker();
+    breaker.onResult(breaker.tryAcquire(), true);
+    for (int i = 0; i < 6; i++) {
+      breaker.onResult(breaker.tryAcquire(), false);
+    }
+    breaker.onResult(breaker.tryAcquire(), true);
+    Assert.assertEquals(CircuitState.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testProbesCloseTheCircuit() {
+    CircuitBreaker breaker = createBreaker();
+    open(breaker);
+    now.addAndGet(100);
+    Permit first = breaker.tryAcquire();
+    Permit second = breaker.tryAcquire();
+    Assert.assertEquals(Permit.PROBE, first);
+    Assert.assertEquals(Permit.PROBE, second);
+    Assert.assertEquals(Permit.REJECTED, breaker.tryAcquire());
+    breaker.onResult(first, false);
+    breaker.onResult(second, false);
+    Assert.assertEquals(CircuitState.CLOSED, breaker.getState());
+    Assert.assertEquals(Arrays.asList(CircuitState.OPEN, CircuitState.HALF_OPEN, CircuitState.CLOSED),
+        transitions);
+  }
+
+  @Test
+  public void testFailedProbeReopens() {
+    CircuitBreaker breaker = createBreaker();
+    open(breaker);
+    now.addAndGet(100);
+    Permit probe = breaker.tryAcquire();
+    breaker.onResult(probe, true);
+    Assert.assertEquals(CircuitState.OPEN, breaker.getState());
+    Assert.assertEquals(Permit.REJECTED, breaker.tryAcquire());
+  }
+
+  @Test
+  public void testReleasedProbeIsReplaced() {
+    CircuitBreaker breaker = createBreaker();
+    open(breaker);
+    now.addAndGet(100);
+    breaker.tryAcquire();
+    Permit cancelled = breaker.tryAcquire();
+    breaker.release(cancelled);
+    Assert.assertEquals(Permit.PROBE, breaker.tryAcquire());
+  }
+}
@@ -0,0 +1,118 @@
+package org.murinrad.fakeapi.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.datamodel.Post;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+import org.murinrad.fakeapi.client.metrics.ClientMetrics;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+import org.murinrad.fakeapi.client.transport.OkHttp3Transport;
+
+public class ContentEncodingTest {
+
+  private HttpServer server;
+  private final List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+  private final Map<Endpoint, long[]> bodySizes = new ConcurrentHashMap<>();
+  private final ClientMetrics metrics = new ClientMetrics() {
+    @Override
+    public void bodyRead(Endpoint endpoint, long wireBytes, long bytes, long parseNanos) {
+      bodySizes.put(endpoint, new long[] {wireBytes, bytes});
+    }
+  };
+
+  @Before
+  public void before() throws IOException {
+    byte[] userData = IOUtils.toByteArray(this.getClass().getResourceAsStream("user_data_1.json"));
+    byte[] postData = IOUtils.toByteArray(this.getClass().getResourceAsStream("posts_data_1.json"));
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/users/1", exchange -> respond(exchange, userData));
+    server.createContext("/posts", exchange -> respond(exchange, postData));
+    server.start();
+  }
+
+  @After
+  public void after() {
+    server.stop(0);
+  }
+
+  private void respond(HttpExchange exchange, byte[] body) throws IOException {
+    String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    acceptEncodings.add(String.valueOf(accepted));
+    if (accepted != null && accepted.contains("gzip")) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+        gzip.write(body);
+      }
+      body = compressed.toByteArray();
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+    }
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  @Test
+  public void testGzipIsDecodedAndMeasured() throws IOException, FakeApiClientException {
+    try (FakeAPIClient client = FakeAPIClient.builder().apiBaseURL(baseUrl())
+        .acceptEncoding(ContentEncoding.GZIP).metrics(metrics).build()) {
+      UserOverview overview = client.retrieveUserOverview(1L);
+      Assert.assertEquals("Leanne Graham", overview.getName());
+      Assert.assertEquals(10, overview.getPosts().size());
+      List<Post> streamed = client.streamUserPosts(1L).collect(Collectors.toList());
+      Assert.assertEquals(10, streamed.size());
+    }
+    Assert.assertTrue(acceptEncodings.stream().allMatch("gzip"::equals));
+    long[] posts = bodySizes.get(Endpoint.POSTS_BY_USER);
+    Assert.assertTrue("Posts should compress: " + posts[0] + " vs " + posts[1], posts[0] < posts[1]);
+    Assert.assertTrue(bodySizes.get(Endpoint.USER)[0] < bodySizes.get(Endpoint.USER)[1]);
+  }
+
+  @Test
+  public void testGzipWithOkHttp3() throws IOException, FakeApiClientException {
+    try (FakeAPIClient client = FakeAPIClient.builder().apiBaseURL(baseUrl())
+        .transport(OkHttp3Transport::new).acceptEncoding(ContentEncoding.BROTLI, ContentEncoding.GZIP)
+        .metrics(metrics).build()) {
+      Assert.assertEquals(10, client.retrieveUserOverview(1L).getPosts().size());
+    }
+    Assert.assertTrue(acceptEncodings.stream().allMatch("br, gzip"::equals));
+    long[] posts = bodySizes.get(Endpoint.POSTS_BY_USER);
+    Assert.assertTrue(posts[0] < posts[1]);
+  }
+
+  @Test
+  public void testTransportNegotiatesByDefault() throws IOException, FakeApiClientException {
+    try (FakeAPIClient client = FakeAPIClient.builder().apiBaseURL(baseUrl()).metrics(metrics).build()) {
+      Assert.assertEquals(10, client.retrieveUserOverview(1L).getPosts().size());
+    }
+    // the transport decoded the body transparently, so only the decoded size is known
+    long[] posts = bodySizes.get(Endpoint.POSTS_BY_USER);
+    Assert.assertEquals(posts[0], posts[1]);
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnsupportedEncoding() throws IOException {
+    ContentEncoding.decode("compress", new ByteArrayInputStream(new byte[0]));
+  }
+}
@@ -0,0 +1,202 @@
+package org.murinrad.fakeapi.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+
+public class DiskCacheTest {
+
+  private static final String ETAG = "W/\"v1\"";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private HttpServer server;
+  private final AtomicInteger fullResponses = new AtomicInteger();
+  private final AtomicInteger notModified = new AtomicInteger();
+
+  @Before
+  public void before() throws IOException {
+    byte[] userData = IOUtils.toByteArray(this.getClass().getResourceAsStream("user_data_1.json"));
+    byte[] postData = IOUtils.toByteArray(this.getClass().getResourceAsStream("posts_data_1.json"));
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/users/1", exchange -> respond(exchange, userData));
+    server.createContext("/posts", exchange -> respond(exchange, postData));
+    server.start();
+  }
+
+  @After
+  public void after() {
+    server.stop(0);
+  }
+
+  private void respond(HttpExchange exchange, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("ETag", ETAG);
+    if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      notModified.incrementAndGet();
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+      return;
+    }
+    fullResponses.incrementAndGet();
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private FakeAPIClient createClient(Path directory) {
+    return FakeAPIClient.builder().apiBaseURL("http://localhost:" + server.getAddress().getPort())
+        .diskCache(directory).build();
+  }
+
+  @Test
+  public void testRevalidatedAfterRestart() throws IOException, FakeApiClientException {
+    Path directory = folder.newFolder("cache").toPath();
+    try (FakeAPIClient client = createClient(directory)) {
+      Assert.assertEquals("Leanne Graham", client.retrieveUserOverview(1L).getName());
+    }
+    Assert.assertEquals(2, fullResponses.get());
+    try (FakeAPIClient client = createClient(directory)) {
+      UserOverview overview = client.retrieveUserOverview(1L);
+      Assert.assertEquals("Leanne Graham", overview.getName());
+      Assert.assertEquals(10, overview.getPosts().size());
+    }
+    Assert.assertEquals(2, fullResponses.get());
+    Assert.assertEquals(2, notModified.get());
+  }
+
+  @Test
+  public void testNotModifiedSkipsParsing() throws IOException, FakeApiClientException {
+    try (FakeAPIClientImpl client = (FakeAPIClientImpl) createClient(folder.newFolder("cache").toPath())) {
+      User first = client.retrieveUser(1L);
+      Assert.assertSame(first, client.retrieveUser(1L));
+      Assert.assertSame(client.retrievePostsAssociatedWithUser(1L), client.retrievePostsAssociatedWithUser(1L));
+    }
+    Assert.assertEquals(2, notModified.get());
+  }
+
+  @Test
+  public void testCorruptEntryIsFetchedAgain() throws IOException, FakeApiClientException {
+    Path directory = folder.newFolder("cache").toPath();
+    try (FakeAPIClientImpl client = (FakeAPIClientImpl) createClient(directory)) {
+      client.retrieveUser(1L);
+    }
+    try (Stream<Path> entries = Files.list(directory)) {
+      entries.forEach(entry -> {
+        try {
+          Files.write(entry, "garbage".getBytes());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+    try (FakeAPIClientImpl client = (FakeAPIClientImpl) createClient(directory)) {
+      Assert.assertEquals("Leanne Graham", client.retrieveUser(1L).getName());
+    }
+    Assert.assertEquals(2, fullResponses.get());
+  }
+
+  private static InputStream body(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String parse(InputStream in) throws IOException {
+    return IOUtils.toString(in, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testMissIsNotRemembered() throws IOException {
+    Path directory = folder.newFolder("cache").toPath();
+    DiskCache first = new DiskCache(directory);
+    Assert.assertNull(first.lookup("k"));
+    new DiskCache(directory).write("k", ETAG, null, body("stored"), DiskCacheTest::parse);
+    DiskCache.Entry entry = first.lookup("k");
+    Assert.assertNotNull(entry);
+    Assert.assertEquals("stored", first.read(entry, DiskCacheTest::parse));
+  }
+
+  @Test
+  public void testReplacedEntryIsNotServed() throws IOException {
+    Path directory = folder.newFolder("cache").toPath();
+    new DiskCache(directory).write("k", ETAG, null, body("old"), DiskCacheTest::parse);
+    DiskCache first = new DiskCache(directory);
+    DiskCache.Entry entry = first.lookup("k");
+    new DiskCache(directory).write("k", "W/\"v2\"", null, body("new"), DiskCacheTest::parse);
+    try {
+      first.read(entry, DiskCacheTest::parse);
+      Assert.fail("Expected an EntryChangedException");
+    } catch (DiskCache.EntryChangedException expected) {
+      Assert.assertNotSame(entry, first.lookup("k"));
+    }
+  }
+
+  @Test
+  public void testEntriesKeyedByBaseUrl() throws IOException, FakeApiClientException {
+    Path directory = folder.newFolder("cache").toPath();
+    try (FakeAPIClientImpl client = (FakeAPIClientImpl) createClient(directory)) {
+      client.retrieveUser(1L);
+    }
+    try (FakeAPIClientImpl client = (FakeAPIClientImpl) FakeAPIClient.builder()
+        .apiBaseURL("http://127.0.0.1:" + server.getAddress().getPort()).diskCache(directory).build()) {
+      client.retrieveUser(1L);
+    }
+    Assert.assertEquals(2, fullResponses.get());
+    Assert.assertEquals(0, notModified.get());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedHeadersEvicted() throws IOException {
+    DiskCache cache = new DiskCache(folder.newFolder("cache").toPath(), 2);
+    cache.write("a", ETAG, null, body("a"), DiskCacheTest::parse);
+    DiskCache.Entry a = cache.lookup("a");
+    cache.write("b", ETAG, null, body("b"), DiskCacheTest::parse);
+    cache.write("c", ETAG, null, body("c"), DiskCacheTest::parse);
+    DiskCache.Entry reread = cache.lookup("a");
+    Assert.assertNotSame(a, reread);
+    AtomicInteger parses = new AtomicInteger();
+    Assert.assertEquals("a", cache.read(reread, in -> {
+      parses.incrementAndGet();
+      return parse(in);
+    }));
+    Assert.assertEquals(1, parses.get());
+    Assert.assertSame(cache.lookup("c"), cache.lookup("c"));
+  }
+
+  @Test
+  public void testUnparsableBodyNotStored() throws IOException {
+    Path directory = folder.newFolder("cache").toPath();
+    DiskCache cache = new DiskCache(directory);
+    try {
+      cache.write("k", ETAG, null, body("broken"), in -> {
+        throw new IOException("Unexpected token");
+      });
+      Assert.fail("The parse failure should propagate");
+    } catch (IOException e) {
+      Assert.assertEquals("Unexpected token", e.getMessage());
+    }
+    Assert.assertNull(cache.lookup("k"));
+    try (Stream<Path> files = Files.list(directory)) {
+      Assert.assertEquals(0, files.count());
+    }
+  }
+}
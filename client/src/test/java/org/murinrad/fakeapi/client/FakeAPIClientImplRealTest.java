@@ -11,8 +11,8 @@ public class FakeAPIClientImplRealTest {
   @Test
   public void testMass() {
     int calls = 1000;
-    try (FakeAPIClient client = FakeAPIClientImpl.Factory.create("http://jsonplaceholder.typicode.com/",
-        100, 500)) {
+    try (FakeAPIClient client = FakeAPIClient.builder().apiBaseURL("http://jsonplaceholder.typicode.com/")
+        .maxRequests(100).maxRequestsPerHost(500).build()) {
       CompletableFuture<UserOverview>[] futures = new CompletableFuture[calls];
       long startTime = System.currentTimeMillis();
       int id = 1;
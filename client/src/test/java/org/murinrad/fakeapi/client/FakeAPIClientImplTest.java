@@ -4,6 +4,8 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.squareup.okhttp.Call;
 import com.squareup.okhttp.Callback;
 import com.squareup.okhttp.OkHttpClient;
@@ -11,9 +13,20 @@ import com.squareup.okhttp.Response;
 import com.squareup.okhttp.ResponseBody;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.Before;
@@ -21,23 +34,29 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.murinrad.fakeapi.client.FakeAPIClient.Factory;
+import org.murinrad.fakeapi.client.datamodel.Post;
 import org.murinrad.fakeapi.client.datamodel.UserOverview;
+import org.murinrad.fakeapi.client.metrics.ClientMetrics;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+import org.murinrad.fakeapi.client.transport.OkHttp2Transport;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({FakeAPIClientImpl.class, OkHttpClient.class})
+@PrepareForTest({OkHttp2Transport.class, OkHttpClient.class})
 public class FakeAPIClientImplTest {
 
   private FakeAPIClientImpl tested;
   private OkHttpClient fakeClient;
+  private Call userCall;
+  private Call postsCall;
 
   @Before
   public void before() throws Exception {
     fakeClient = mock(OkHttpClient.class);
-    Call userCall = mock(Call.class);
-    Call postsCall = mock(Call.class);
+    userCall = mock(Call.class);
+    postsCall = mock(Call.class);
     Call errorCall = mock(Call.class);
     Call transportErrorCall = mock(Call.class);
     byte[] userData = IOUtils.toString(this.getClass().getResourceAsStream("user_data_1.json"), "UTF-8").getBytes();
@@ -103,6 +122,22 @@ public class FakeAPIClientImplTest {
     Assert.assertEquals("Collection should have 10 items", 10, retVal.getPosts().size());
   }
 
+  @Test
+  public void testNullUserFailsOverview() throws Exception {
+    Call nullUserCall = mock(Call.class);
+    matchCallToURL(nullUserCall, "/users/7");
+    prepareCallbackHandle(nullUserCall, constructResponse(200, true, "null".getBytes()));
+    Call posts = mock(Call.class);
+    matchCallToURL(posts, "/posts?userId=7");
+    prepareCallbackHandle(posts, constructResponse(200, true, "[]".getBytes()));
+    try {
+      tested.retrieveUserOverviewAsync(7L).get(5, TimeUnit.SECONDS);
+      Assert.fail("Expected the overview to fail");
+    } catch (ExecutionException ex) {
+      Assert.assertTrue(ex.getCause() instanceof NullPointerException);
+    }
+  }
+
   @Test(expected = FakeApiClientException.class)
   public void testErrorCallAsync() throws Throwable {
     try {
@@ -156,6 +191,407 @@ public class FakeAPIClientImplTest {
     Assert.assertEquals(1L, retVal.getId());
   }
 
+  @Test
+  public void testRetrieveUserOverviews() throws IOException, FakeApiClientException {
+    Map<Long, UserOverview> retVal = tested.retrieveUserOverviews(Arrays.asList(1L, 1L));
+    Assert.assertEquals("Duplicate ids should be retrieved once", 1, retVal.size());
+    Assert.assertEquals("Leanne Graham", retVal.get(1L).getName());
+    Assert.assertEquals("Collection should have 10 items", 10, retVal.get(1L).getPosts().size());
+  }
+
+  @Test
+  public void testRetrieveUserOverviewsBulkPosts() throws IOException, FakeApiClientException {
+    when(fakeClient.newCall(Mockito.argThat(x -> x != null && x.urlString().contains("/users/"))))
+        .thenReturn(userCall);
+    matchCallToURL(postsCall, "/posts/");
+    List<Long> ids = new ArrayList<>();
+    for (long id = FakeAPIClientImpl.BULK_POSTS_THRESHOLD; id > 0; id--) {
+      ids.add(id);
+    }
+    Map<Long, UserOverview> retVal = tested.retrieveUserOverviews(ids);
+    Assert.assertEquals(ids, new ArrayList<>(retVal.keySet()));
+    Assert.assertEquals("Collection should have 10 items", 10, retVal.get(1L).getPosts().size());
+    Assert.assertTrue(retVal.get(2L).getPosts().isEmpty());
+    Mockito.verify(postsCall, Mockito.never()).execute();
+  }
+
+  @Test
+  public void testRetrieveUserOverviewsWithSingleRequestInFlight() throws IOException, FakeApiClientException {
+    FakeAPIClient client = FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .limiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1).maxLimit(1).maxQueueSize(0).build())
+        .build();
+    Map<Long, UserOverview> retVal = client.retrieveUserOverviews(Arrays.asList(1L, 1L));
+    Assert.assertEquals("Leanne Graham", retVal.get(1L).getName());
+    Assert.assertEquals("Collection should have 10 items", 10, retVal.get(1L).getPosts().size());
+  }
+
+  @Test(expected = FakeApiClientException.class)
+  public void testRetrieveUserOverviewsError() throws IOException, FakeApiClientException {
+    tested.retrieveUserOverviews(Arrays.asList(1L, 123L));
+  }
+
+  @Test
+  public void testCachedRetrieveUserOverview() throws IOException, FakeApiClientException {
+    FakeAPIClient cached = FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .cache(new CacheSettings(Duration.ofMinutes(1), 100, 1 << 20)).build();
+    cached.retrieveUserOverview(1L);
+    UserOverview retVal = cached.retrieveUserOverview(1L);
+    Assert.assertEquals("Leanne Graham", retVal.getName());
+    Assert.assertEquals("Collection should have 10 items", 10, retVal.getPosts().size());
+    Mockito.verify(userCall, Mockito.times(1)).execute();
+    Mockito.verify(postsCall, Mockito.times(1)).enqueue(Mockito.any(Callback.class));
+    Assert.assertEquals(2, cached.cacheStats().getHitCount());
+    Assert.assertEquals(2, cached.cacheStats().getMissCount());
+  }
+
+  @Test
+  public void testStreamUserPosts() throws IOException, FakeApiClientException {
+    try (Stream<Post> posts = tested.streamUserPosts(1L)) {
+      Assert.assertEquals("Stream should have 10 items", 10, posts.count());
+    }
+  }
+
+  @Test(expected = FakeApiClientException.class)
+  public void testStreamUserPostsError() throws IOException, FakeApiClientException {
+    tested.streamUserPosts(123L);
+  }
+
+  @Test
+  public void testPostReaderSkipsUnknownFields() throws IOException {
+    String json = "[{\"userId\": 7, \"extra\": {\"nested\": [1, 2]}, \"id\": 3, \"title\": \"t\"},"
+        + " {\"id\": 4, \"title\": null, \"userId\": 8}]";
+    try (PostReader reader = new PostReader(new ObjectMapper().getFactory().createParser(json))) {
+      Post first = reader.next();
+      Assert.assertEquals(3L, first.getId());
+      Assert.assertEquals("t", first.getTitle());
+      Assert.assertEquals(7L, reader.getUserId());
+      Post second = reader.next();
+      Assert.assertEquals(4L, second.getId());
+      Assert.assertNull(second.getTitle());
+      Assert.assertEquals(8L, reader.getUserId());
+      Assert.assertNull(reader.next());
+    }
+  }
+
+  @Test
+  public void testPostReaderRejectsStructuredFields() throws IOException {
+    String[] payloads = {"[{\"id\": {\"value\": 3}}]", "[{\"userId\": [7]}]", "[{\"title\": {\"text\": \"t\"}}]"};
+    for (String json : payloads) {
+      try (PostReader reader = new PostReader(new ObjectMapper().getFactory().createParser(json))) {
+        reader.next();
+        Assert.fail("Expected a JsonParseException for " + json);
+      } catch (JsonParseException ex) {
+        Assert.assertTrue(ex.getMessage().startsWith("Expected a scalar"));
+      }
+    }
+  }
+
+  @Test
+  public void testPostReaderPoolsTitles() throws IOException {
+    String json = "[{\"id\": 1, \"title\": \"same\"}, {\"id\": 2, \"title\": \"same\"},"
+        + " {\"id\": 3, \"title\": \"other\"}, {\"id\": 4, \"title\": 5}]";
+    StringPool pool = new StringPool(16);
+    try (PostReader reader = new PostReader(new ObjectMapper().getFactory().createParser(json), pool)) {
+      List<Post> posts = reader.readAll();
+      Assert.assertSame(posts.get(0).getTitle(), posts.get(1).getTitle());
+      Assert.assertEquals("same", posts.get(0).getTitle());
+      Assert.assertEquals("other", posts.get(2).getTitle());
+      Assert.assertEquals("5", posts.get(3).getTitle());
+    }
+    char[] chars = "xsamex".toCharArray();
+    Assert.assertEquals("same", pool.get(chars, 1, 4));
+  }
+
+  @Test
+  public void testUserOverviewAdoptsPosts() throws IOException, FakeApiClientException {
+    UserOverview retVal = tested.retrieveUserOverview(1L);
+    try {
+      retVal.getPosts().clear();
+      Assert.fail("Expected the posts to be unmodifiable");
+    } catch (UnsupportedOperationException expected) {
+      // the list shared with the cache can not be changed through the overview
+    }
+    Assert.assertEquals(10, retVal.getPosts().size());
+  }
+
+  @Test
+  public void testRetrieveUserOverviewVirtualThreads() throws Exception {
+    try (FakeAPIClient client = FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .executionMode(ExecutionMode.VIRTUAL_THREADS).build()) {
+      UserOverview retVal = client.retrieveUserOverview(1L);
+      Assert.assertEquals("Leanne Graham", retVal.getName());
+      Assert.assertEquals("Collection should have 10 items", 10, retVal.getPosts().size());
+      retVal = client.retrieveUserOverviewAsync(1L).get();
+      Assert.assertEquals("Collection should have 10 items", 10, retVal.getPosts().size());
+      Mockito.verify(postsCall, Mockito.never()).enqueue(Mockito.any(Callback.class));
+    }
+  }
+
+  @Test(expected = FakeApiClientException.class)
+  public void testErrorCallVirtualThreads() throws IOException, FakeApiClientException {
+    try (FakeAPIClient client = FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .executionMode(ExecutionMode.VIRTUAL_THREADS).build()) {
+      client.retrieveUserOverview(123L);
+    }
+  }
+
+  @Test
+  public void testRuntimeExceptionFailsCallVirtualThreads() throws Exception {
+    Call brokenCall = mock(Call.class);
+    matchCallToURL(brokenCall, "/users/778");
+    when(brokenCall.execute()).thenThrow(new IllegalStateException("Broken interceptor"));
+    try (FakeAPIClientImpl client = (FakeAPIClientImpl) FakeAPIClient.builder()
+        .apiBaseURL("http://doesNotMatter.com/").executionMode(ExecutionMode.VIRTUAL_THREADS)
+        .limiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1).maxQueueSize(0).build()).build()) {
+      try {
+        client.retrieveUserAsync(778L).get(5, TimeUnit.SECONDS);
+        Assert.fail("Expected an IllegalStateException");
+      } catch (ExecutionException ex) {
+        Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+      }
+      Assert.assertEquals("Leanne Graham", client.retrieveUser(1L).getName());
+    }
+  }
+
+  @Test
+  public void testFailFastCancelsSibling() throws IOException {
+    Call pendingCall = mock(Call.class);
+    matchCallToURL(pendingCall, "/posts?userId=555");
+    matchCallToURL(errorCallFor555(), "/users/555");
+    FakeAPIClient client = FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .failFast(true).build();
+    try {
+      client.retrieveUserOverview(555L);
+      Assert.fail("Expected a FakeApiClientException");
+    } catch (FakeApiClientException ex) {
+      Assert.assertEquals(404, ex.getCode());
+    }
+    Mockito.verify(pendingCall).cancel();
+  }
+
+  @Test
+  public void testNoFailFastKeepsSibling() throws IOException {
+    Call pendingCall = mock(Call.class);
+    matchCallToURL(pendingCall, "/posts?userId=555");
+    matchCallToURL(errorCallFor555(), "/users/555");
+    try {
+      tested.retrieveUserOverview(555L);
+      Assert.fail("Expected a FakeApiClientException");
+    } catch (FakeApiClientException ex) {
+      Assert.assertEquals(404, ex.getCode());
+    }
+    Mockito.verify(pendingCall, Mockito.never()).cancel();
+  }
+
+  @Test
+  public void testInterruptCancelsPostsCall() throws FakeApiClientException {
+    Call pendingPostsCall = mock(Call.class);
+    matchCallToURL(pendingPostsCall, "/posts?userId=1");
+    Thread.currentThread().interrupt();
+    try {
+      tested.retrieveUserOverview(1L);
+      Assert.fail("Expected an InterruptedIOException");
+    } catch (IOException ex) {
+      Assert.assertTrue(ex instanceof InterruptedIOException);
+    } finally {
+      Thread.interrupted();
+    }
+    Mockito.verify(pendingPostsCall).cancel();
+  }
+
+  @Test
+  public void testCancelOverviewCancelsCalls() {
+    Call pendingUserCall = mock(Call.class);
+    Call pendingPostsCall = mock(Call.class);
+    matchCallToURL(pendingUserCall, "/users/777");
+    matchCallToURL(pendingPostsCall, "/posts?userId=777");
+    Future<UserOverview> overview = tested.retrieveUserOverviewAsync(777L);
+    Assert.assertTrue(overview.cancel(true));
+    Mockito.verify(pendingUserCall).cancel();
+    Mockito.verify(pendingPostsCall).cancel();
+  }
+
+  @Test
+  public void testOverviewTimeout() throws InterruptedException {
+    Call pendingUserCall = mock(Call.class);
+    Call pendingPostsCall = mock(Call.class);
+    matchCallToURL(pendingUserCall, "/users/777");
+    matchCallToURL(pendingPostsCall, "/posts?userId=777");
+    Future<UserOverview> overview = tested.retrieveUserOverviewAsync(777L, Duration.ofMillis(50));
+    try {
+      overview.get();
+      Assert.fail("Expected a TimeoutException");
+    } catch (ExecutionException ex) {
+      Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+    }
+    // the calls are cancelled on the timer thread, possibly after get() returned
+    Mockito.verify(pendingUserCall, Mockito.timeout(1000)).cancel();
+    Mockito.verify(pendingPostsCall, Mockito.timeout(1000)).cancel();
+  }
+
+  @Test
+  public void testMetricsRecorded() throws IOException, FakeApiClientException {
+    ClientMetrics metrics = mock(ClientMetrics.class);
+    FakeAPIClient client = FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .metrics(metrics).build();
+    client.retrieveUserOverview(1L);
+    try {
+      client.retrieveUserOverview(123L);
+      Assert.fail("Expected a FakeApiClientException");
+    } catch (FakeApiClientException ex) {
+      Assert.assertEquals(404, ex.getCode());
+    }
+    Mockito.verify(metrics).bindTransport(Mockito.any());
+    Mockito.verify(metrics).requestCompleted(Mockito.eq(Endpoint.USER), Mockito.eq(200), Mockito.anyLong());
+    Mockito.verify(metrics).requestCompleted(Mockito.eq(Endpoint.POSTS_BY_USER), Mockito.eq(200),
+        Mockito.anyLong());
+    Mockito.verify(metrics, Mockito.atLeastOnce()).requestCompleted(Mockito.any(), Mockito.eq(404),
+        Mockito.anyLong());
+    Mockito.verify(metrics).bodyRead(Mockito.eq(Endpoint.USER), Mockito.longThat(bytes -> bytes > 0),
+        Mockito.longThat(bytes -> bytes > 0), Mockito.anyLong());
+    Mockito.verify(metrics).bodyRead(Mockito.eq(Endpoint.POSTS_BY_USER), Mockito.longThat(bytes -> bytes > 0),
+        Mockito.longThat(bytes -> bytes > 0), Mockito.anyLong());
+  }
+
+  @Test
+  public void testLimiterRejectsOverLimit() throws IOException, FakeApiClientException {
+    Call pendingCall = mock(Call.class);
+    matchCallToURL(pendingCall, "/users/777");
+    // like OkHttp, report the cancellation to the callback
+    AtomicReference<Callback> pendingCallback = new AtomicReference<>();
+    doAnswer(invocationOnMock -> {
+      pendingCallback.set(invocationOnMock.getArgument(0));
+      return null;
+    }).when(pendingCall).enqueue(Mockito.any(Callback.class));
+    doAnswer(invocationOnMock -> {
+      pendingCallback.get().onFailure(null, new IOException("Canceled"));
+      return null;
+    }).when(pendingCall).cancel();
+    FakeAPIClientImpl client = (FakeAPIClientImpl) FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .limiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1).maxQueueSize(0).build()).build();
+    CompletableFuture<User> pending = client.retrieveUserAsync(777L);
+    try {
+      client.retrieveUser(1L);
+      Assert.fail("Expected a RequestRejectedException");
+    } catch (RequestRejectedException ex) {
+      Assert.assertEquals(RequestRejectedException.CODE, ex.getCode());
+    }
+    pending.cancel(true);
+    Assert.assertEquals("Leanne Graham", client.retrieveUser(1L).getName());
+  }
+
+  @Test
+  public void testLimiterPermitReturnedOnTransportRuntimeException() throws IOException, FakeApiClientException {
+    Call brokenCall = mock(Call.class);
+    matchCallToURL(brokenCall, "/users/778");
+    when(brokenCall.execute()).thenThrow(new IllegalStateException("Broken interceptor"));
+    FakeAPIClientImpl client = (FakeAPIClientImpl) FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .limiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1).maxQueueSize(0).build()).build();
+    try {
+      client.retrieveUser(778L);
+      Assert.fail("Expected an IllegalStateException");
+    } catch (IllegalStateException ex) {
+      Assert.assertEquals("Broken interceptor", ex.getMessage());
+    }
+    Assert.assertEquals("Leanne Graham", client.retrieveUser(1L).getName());
+  }
+
+  @Test
+  public void testLimiterPermitReturnedWhenInterruptedInQueue() throws IOException, FakeApiClientException {
+    Call pendingCall = mock(Call.class);
+    matchCallToURL(pendingCall, "/users/777");
+    AtomicReference<Callback> pendingCallback = new AtomicReference<>();
+    doAnswer(invocationOnMock -> {
+      pendingCallback.set(invocationOnMock.getArgument(0));
+      return null;
+    }).when(pendingCall).enqueue(Mockito.any(Callback.class));
+    doAnswer(invocationOnMock -> {
+      pendingCallback.get().onFailure(null, new IOException("Canceled"));
+      return null;
+    }).when(pendingCall).cancel();
+    FakeAPIClientImpl client = (FakeAPIClientImpl) FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .limiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1).maxQueueSize(1).build()).build();
+    CompletableFuture<User> pending = client.retrieveUserAsync(777L);
+    Thread.currentThread().interrupt();
+    try {
+      client.retrieveUser(1L);
+      Assert.fail("Expected an InterruptedIOException");
+    } catch (IOException ex) {
+      Assert.assertTrue(ex instanceof InterruptedIOException);
+    } finally {
+      Thread.interrupted();
+    }
+    pending.cancel(true);
+    Assert.assertEquals("Leanne Graham", client.retrieveUser(1L).getName());
+  }
+
+  @Test
+  public void testRetryAfterServerError() throws Exception {
+    Call flakyCall = mock(Call.class);
+    matchCallToURL(flakyCall, "/users/888");
+    Response unavailable = constructResponse(503, false, "{}".getBytes());
+    Response user = constructResponse(200, true,
+        IOUtils.toByteArray(this.getClass().getResourceAsStream("user_data_1.json")));
+    when(flakyCall.execute()).thenReturn(unavailable, user);
+    FakeAPIClientImpl client = (FakeAPIClientImpl) FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .retryPolicy(new RetryPolicy.Builder().backoff(Duration.ofMillis(1), Duration.ofMillis(5)).build())
+        .build();
+    Assert.assertEquals("Leanne Graham", client.retrieveUser(888L).getName());
+    Mockito.verify(flakyCall, Mockito.times(2)).execute();
+  }
+
+  @Test
+  public void testCircuitBreakerFailsFast() throws IOException {
+    Call unavailableCall = mock(Call.class);
+    matchCallToURL(unavailableCall, "/users/999");
+    when(unavailableCall.execute()).thenAnswer(invocation -> constructResponse(503, false, "{}".getBytes()));
+    List<CircuitState> transitions = new ArrayList<>();
+    FakeAPIClientImpl client = (FakeAPIClientImpl) FakeAPIClient.builder().apiBaseURL("http://doesNotMatter.com/")
+        .circuitBreaker(new CircuitBreakerSettings.Builder().slidingWindow(2, 2)
+            .listener((endpoint, from, to) -> transitions.add(to)).build())
+        .build();
+    for (int i = 0; i < 3; i++) {
+      try {
+        client.retrieveUser(999L);
+        Assert.fail("Expected a FakeApiClientException");
+      } catch (FakeApiClientException ex) {
+        Assert.assertEquals(i == 2, ex instanceof CircuitOpenException);
+      }
+    }
+    Mockito.verify(unavailableCall, Mockito.times(2)).execute();
+    Assert.assertEquals(Collections.singletonList(CircuitState.OPEN), transitions);
+  }
+
+  private Call errorCallFor555() throws IOException {
+    Call call = mock(Call.class);
+    Response notFound = constructResponse(404, false, "{}".getBytes());
+    prepareCallbackHandle(call, notFound);
+    when(call.execute()).thenReturn(notFound);
+    return call;
+  }
+
+  @Test
+  public void testRequestWindowLimitsInFlight() {
+    int[] inFlight = new int[2];
+    List<CompletableFuture<Integer>> pending = new ArrayList<>();
+    CompletableFuture<List<Integer>> result = RequestWindow.run(
+        Arrays.asList(1, 2, 3, 4, 5), 2, value -> {
+          inFlight[0]++;
+          inFlight[1] = Math.max(inFlight[1], inFlight[0]);
+          CompletableFuture<Integer> future = new CompletableFuture<>();
+          pending.add(future);
+          return future.thenApply(x -> {
+            inFlight[0]--;
+            return value * 10;
+          });
+        });
+    for (int i = 0; i < pending.size(); i++) {
+      pending.get(i).complete(i);
+    }
+    Assert.assertEquals(Arrays.asList(10, 20, 30, 40, 50), result.join());
+    Assert.assertEquals(2, inFlight[1]);
+  }
+
   private Response constructResponse(int code, boolean isSuccessful, byte[] body) throws IOException {
     Response response = mock(Response.class);
     ResponseBody responseBody = mock(ResponseBody.class);
@@ -163,7 +599,7 @@ public class FakeAPIClientImplTest {
     when(response.code()).thenReturn(code);
     when(response.body()).thenReturn(responseBody);
     when(responseBody.bytes()).thenReturn(body);
-    when(responseBody.byteStream()).thenReturn(new ByteArrayInputStream(body));
+    when(responseBody.byteStream()).thenAnswer(invocation -> new ByteArrayInputStream(body));
     return response;
   }
 
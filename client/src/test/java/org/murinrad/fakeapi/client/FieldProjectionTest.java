@@ -0,0 +1,85 @@
+package org.murinrad.fakeapi.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.datamodel.Post;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+
+public class FieldProjectionTest {
+
+  private HttpServer server;
+  private final List<String> queries = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void before() throws IOException {
+    byte[] userData = IOUtils.toByteArray(this.getClass().getResourceAsStream("user_data_1.json"));
+    byte[] postData = IOUtils.toByteArray(this.getClass().getResourceAsStream("posts_data_1.json"));
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/users/1", exchange -> respond(exchange, userData));
+    server.createContext("/posts", exchange -> respond(exchange, postData));
+    server.start();
+  }
+
+  @After
+  public void after() {
+    server.stop(0);
+  }
+
+  private void respond(HttpExchange exchange, byte[] body) throws IOException {
+    queries.add(exchange.getRequestURI().getRawPath() + "?" + exchange.getRequestURI().getRawQuery());
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private FakeAPIClient client(FieldProjection projection) {
+    return FakeAPIClient.builder().apiBaseURL("http://localhost:" + server.getAddress().getPort())
+        .fieldProjection(projection).build();
+  }
+
+  @Test
+  public void testFieldsAreSentUpstream() throws IOException, FakeApiClientException {
+    try (FakeAPIClient client = client(new FieldProjection("fields", true))) {
+      UserOverview overview = client.retrieveUserOverview(1L);
+      Assert.assertEquals("Leanne Graham", overview.getName());
+      Assert.assertNotNull(overview.getPosts().get(0).getTitle());
+      Map<Long, UserOverview> overviews = client.retrieveUserOverviews(Arrays.asList(1L));
+      Assert.assertEquals(10, overviews.get(1L).getPosts().size());
+    }
+    Assert.assertTrue(queries.contains("/users/1?fields=id,name,username,email"));
+    Assert.assertTrue(queries.contains("/posts?userId=1&fields=id,userId,title"));
+  }
+
+  @Test
+  public void testPostsWithoutTitles() throws IOException, FakeApiClientException {
+    try (FakeAPIClient client = client(new FieldProjection(null, false))) {
+      UserOverview overview = client.retrieveUserOverview(1L);
+      Assert.assertEquals(10, overview.getPosts().size());
+      for (Post post : overview.getPosts()) {
+        Assert.assertTrue(post.getId() > 0);
+        Assert.assertNull(post.getTitle());
+      }
+    }
+    Assert.assertTrue(queries.contains("/users/1?null"));
+    Assert.assertTrue(queries.contains("/posts?userId=1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyQueryParameter() {
+    new FieldProjection(" ", true);
+  }
+}
@@ -0,0 +1,29 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonReadersTest {
+
+  private static final String USER_JSON =
+      "{\"id\": 1, \"name\": \"Leanne Graham\", \"address\": {\"city\": \"Gwenborough\"}}";
+
+  @Test
+  public void testSharedAcrossCalls() {
+    JsonReaders.requireAfterburner();
+    Assert.assertSame(JsonReaders.standard(), JsonReaders.standard());
+    Assert.assertSame(JsonReaders.afterburner(), JsonReaders.afterburner());
+    Assert.assertNotSame(JsonReaders.standard(), JsonReaders.afterburner());
+  }
+
+  @Test
+  public void testUserReaderIgnoresUnknownFields() throws IOException {
+    for (JsonReaders readers : new JsonReaders[] {JsonReaders.standard(), JsonReaders.afterburner()}) {
+      User user = readers.getUserReader().readValue(new ByteArrayInputStream(USER_JSON.getBytes("UTF-8")));
+      Assert.assertEquals(1L, user.getId());
+      Assert.assertEquals("Leanne Graham", user.getName());
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package org.murinrad.fakeapi.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+import org.murinrad.fakeapi.client.transport.TransportRequest;
+
+public class LoadBalancerTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger brokenRequests = new AtomicInteger();
+  private HttpServer healthy;
+  private HttpServer broken;
+
+  @Before
+  public void before() throws IOException {
+    byte[] userData = IOUtils.toByteArray(this.getClass().getResourceAsStream("user_data_1.json"));
+    byte[] postData = IOUtils.toByteArray(this.getClass().getResourceAsStream("posts_data_1.json"));
+    healthy = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    healthy.createContext("/users/1", exchange -> respond(exchange, 200, userData));
+    healthy.createContext("/posts", exchange -> respond(exchange, 200, postData));
+    healthy.start();
+    broken = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    broken.createContext("/", exchange -> {
+      brokenRequests.incrementAndGet();
+      respond(exchange, 503, "{}".getBytes());
+    });
+    broken.start();
+  }
+
+  @After
+  public void after() {
+    healthy.stop(0);
+    broken.stop(0);
+  }
+
+  private static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+    exchange.sendResponseHeaders(code, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private LoadBalancer createBalancer(String... baseUrls) {
+    return new LoadBalancer(Arrays.asList(baseUrls), new LoadBalancerSettings.Builder()
+        .failuresToEject(2)
+        .ejectionTime(Duration.ofNanos(100))
+        .build(), now::get);
+  }
+
+  private FakeAPIClient createClient(LoadBalancerSettings settings) {
+    return FakeAPIClient.builder()
+        .apiBaseURLs(Arrays.asList("http://localhost:" + broken.getAddress().getPort() + "/",
+            "http://localhost:" + healthy.getAddress().getPort()))
+        .loadBalancer(settings)
+        .build();
+  }
+
+  @Test
+  public void testPicksLessLoadedReplica() {
+    LoadBalancer balancer = createBalancer("http://a", "http://b");
+    LoadBalancer.Replica first = balancer.choose(null);
+    LoadBalancer.Replica second = balancer.choose(null);
+    Assert.assertNotSame(first, second);
+    balancer.finished(first, null);
+    Assert.assertSame(first, balancer.choose(null));
+    Assert.assertEquals(1, second.getOutstanding());
+  }
+
+  @Test
+  public void testEjectsFailingReplica() {
+    LoadBalancer balancer = createBalancer("http://a", "http://b");
+    LoadBalancer.Replica failing = balancer.choose(null);
+    LoadBalancer.Replica other = balancer.choose(failing);
+    balancer.finished(other, null);
+    balancer.finished(failing, new FakeApiClientException("Unavailable", 503));
+    Assert.assertSame(failing, balancer.choose(other));
+    balancer.finished(failing, new SocketTimeoutException());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertNotSame(failing, balancer.choose(null));
+    }
+    now.addAndGet(100);
+    Assert.assertSame(failing, balancer.choose(null));
+  }
+
+  @Test
+  public void testNegativeClockDoesNotEjectEarly() {
+    now.set(-1_000_000L);
+    LoadBalancer balancer = createBalancer("http://a", "http://b");
+    LoadBalancer.Replica failing = balancer.choose(null);
+    balancer.finished(failing, new IOException());
+    LoadBalancer.Replica busy = balancer.choose(failing);
+    Assert.assertSame(failing, balancer.choose(null));
+    balancer.finished(failing, new IOException());
+    Assert.assertSame(busy, balancer.choose(null));
+  }
+
+  @Test
+  public void testClientFailuresDoNotEject() {
+    LoadBalancer balancer = createBalancer("http://a", "http://b");
+    LoadBalancer.Replica replica = balancer.choose(null);
+    balancer.finished(replica, new FakeApiClientException("Not Found", 404));
+    balancer.choose(null);
+    balancer.finished(replica, new CircuitOpenException(Endpoint.USER));
+    Assert.assertSame(replica, balancer.choose(null));
+  }
+
+  @Test
+  public void testAllEjectedUsesReplicaReturningFirst() {
+    LoadBalancer balancer = createBalancer("http://a", "http://b");
+    LoadBalancer.Replica a = balancer.choose(null);
+    LoadBalancer.Replica b = balancer.choose(a);
+    for (int i = 0; i < 2; i++) {
+      balancer.finished(a, new IOException());
+      balancer.choose(null);
+    }
+    now.addAndGet(10);
+    balancer.finished(b, new IOException());
+    balancer.finished(balancer.choose(a), new IOException());
+    Assert.assertSame(a, balancer.choose(null));
+  }
+
+  @Test
+  public void testRewritesToReplica() {
+    LoadBalancer balancer = createBalancer("http://a:8080", "http://b");
+    TransportRequest request = new TransportRequest.Builder().url("http://a:8080/users/1?fields=id")
+        .header("Accept", "application/json").build();
+    LoadBalancer.Replica a = balancer.choose(null);
+    LoadBalancer.Replica b = balancer.choose(a);
+    if (!"http://b".equals(b.getBaseUrl())) {
+      LoadBalancer.Replica swap = a;
+      a = b;
+      b = swap;
+    }
+    Assert.assertSame(request, balancer.rewrite(request, a));
+    TransportRequest rewritten = balancer.rewrite(request, b);
+    Assert.assertEquals("http://b/users/1?fields=id", rewritten.getUrl());
+    Assert.assertEquals("application/json", rewritten.getHeaders().get("Accept"));
+  }
+
+  @Test
+  public void testFailsOverToHealthyReplica() throws IOException, FakeApiClientException {
+    try (FakeAPIClient client = createClient(new LoadBalancerSettings.Builder().build())) {
+      for (int i = 0; i < 5; i++) {
+        UserOverview overview = client.retrieveUserOverview(1L);
+        Assert.assertEquals("Leanne Graham", overview.getName());
+      }
+    }
+  }
+
+  @Test
+  public void testFailsOverAsync() throws ExecutionException, InterruptedException {
+    try (FakeAPIClient client = createClient(new LoadBalancerSettings.Builder().build())) {
+      for (int i = 0; i < 5; i++) {
+        UserOverview overview = client.retrieveUserOverviewAsync(1L).get();
+        Assert.assertEquals("Collection should have 10 items", 10, overview.getPosts().size());
+      }
+    }
+  }
+
+  @Test
+  public void testEjectedReplicaReceivesNoRequests() throws IOException, FakeApiClientException {
+    try (FakeAPIClient client = createClient(new LoadBalancerSettings.Builder()
+        .failuresToEject(1).ejectionTime(Duration.ofMinutes(1)).build())) {
+      for (int i = 0; i < 10; i++) {
+        client.retrieveUserOverview(1L);
+      }
+    }
+    Assert.assertEquals(1, brokenRequests.get());
+  }
+
+  @Test
+  public void testWithoutFailoverReportsFailure() throws IOException {
+    try (FakeAPIClient client = createClient(new LoadBalancerSettings.Builder().maxFailovers(0).build())) {
+      int failures = 0;
+      for (int i = 0; i < 20; i++) {
+        try {
+          client.retrieveUserOverview(1L);
+        } catch (FakeApiClientException ex) {
+          Assert.assertEquals(503, ex.getCode());
+          failures++;
+        }
+      }
+      Assert.assertTrue("The broken replica should fail some requests", failures > 0);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsInvalidReplicaURL() {
+    FakeAPIClient.builder().apiBaseURLs(Arrays.asList("http://localhost", "not a url")).build();
+  }
+}
@@ -0,0 +1,72 @@
+package org.murinrad.fakeapi.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.datamodel.UserOverview;
+import org.murinrad.fakeapi.client.transport.OkHttp3Transport;
+
+public class OkHttp3TransportTest {
+
+  private HttpServer server;
+  private FakeAPIClient tested;
+
+  @Before
+  public void before() throws IOException {
+    byte[] userData = IOUtils.toByteArray(this.getClass().getResourceAsStream("user_data_1.json"));
+    byte[] postData = IOUtils.toByteArray(this.getClass().getResourceAsStream("posts_data_1.json"));
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/users/1", exchange -> respond(exchange, 200, userData));
+    server.createContext("/users/123", exchange -> respond(exchange, 404, "{}".getBytes()));
+    server.createContext("/posts", exchange -> respond(exchange, 200, postData));
+    server.start();
+    tested = FakeAPIClient.builder().apiBaseURL("http://localhost:" + server.getAddress().getPort())
+        .transport(OkHttp3Transport::new).prewarmConnections(2).build();
+  }
+
+  @After
+  public void after() {
+    tested.close();
+    server.stop(0);
+  }
+
+  private static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+    exchange.sendResponseHeaders(code, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  @Test
+  public void testRetrieveUserOverview() throws IOException, FakeApiClientException {
+    UserOverview retVal = tested.retrieveUserOverview(1L);
+    Assert.assertEquals("Leanne Graham", retVal.getName());
+    Assert.assertEquals("Collection should have 10 items", 10, retVal.getPosts().size());
+  }
+
+  @Test
+  public void testRetrieveUserOverviewAsync() throws ExecutionException, InterruptedException {
+    UserOverview retVal = tested.retrieveUserOverviewAsync(1L).get();
+    Assert.assertEquals("Leanne Graham", retVal.getName());
+    Assert.assertEquals("Collection should have 10 items", 10, retVal.getPosts().size());
+  }
+
+  @Test
+  public void testErrorCall() throws IOException {
+    try {
+      tested.retrieveUserOverview(123L);
+      Assert.fail("Expected a FakeApiClientException");
+    } catch (FakeApiClientException ex) {
+      Assert.assertEquals(404, ex.getCode());
+    }
+  }
+}
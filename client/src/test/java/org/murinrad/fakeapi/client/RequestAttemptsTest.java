@@ -0,0 +1,133 @@
+package org.murinrad.fakeapi.client;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.metrics.ClientMetrics;
+import org.murinrad.fakeapi.client.metrics.Endpoint;
+
+public class RequestAttemptsTest {
+
+  private static final RetryPolicy POLICY = new RetryPolicy.Builder().maxAttempts(3)
+      .backoff(Duration.ZERO, Duration.ZERO).build();
+
+  private final List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+  private CompletableFuture<String> nextAttempt() {
+    CompletableFuture<String> attempt = new CompletableFuture<>();
+    synchronized (attempts) {
+      attempts.add(attempt);
+      attempts.notifyAll();
+    }
+    return attempt;
+  }
+
+  private CompletableFuture<String> awaitAttempt(int index) throws InterruptedException {
+    synchronized (attempts) {
+      long deadline = System.currentTimeMillis() + 1000;
+      while (attempts.size() <= index && System.currentTimeMillis() < deadline) {
+        attempts.wait(100);
+      }
+      Assert.assertTrue("Attempt " + index + " was not sent", attempts.size() > index);
+      return attempts.get(index);
+    }
+  }
+
+  private RequestAttempts<String> start(RetryPolicy policy, RetryBudget budget, long hedgeDelayNanos) {
+    return RequestAttempts.start(Endpoint.USER, this::nextAttempt, policy, budget, hedgeDelayNanos,
+        ClientMetrics.NOOP);
+  }
+
+  @Test
+  public void testRetriesServerErrors() throws Exception {
+    RequestAttempts<String> result = start(POLICY, new RetryBudget(0, 10, System::nanoTime), -1);
+    awaitAttempt(0).completeExceptionally(new FakeApiClientException("Unavailable", 503));
+    awaitAttempt(1).completeExceptionally(new ConnectException("Connection refused"));
+    awaitAttempt(2).complete("user");
+    Assert.assertEquals("user", result.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testGivesUpAfterMaxAttempts() throws Exception {
+    RequestAttempts<String> result = start(POLICY, new RetryBudget(0, 10, System::nanoTime), -1);
+    for (int i = 0; i < 3; i++) {
+      awaitAttempt(i).completeExceptionally(new FakeApiClientException("Unavailable", 503));
+    }
+    assertFailsWithCode(result, 503);
+    Assert.assertEquals(3, attempts.size());
+  }
+
+  @Test
+  public void testClientErrorsAreNotRetried() throws Exception {
+    RequestAttempts<String> result = start(POLICY, new RetryBudget(0, 10, System::nanoTime), -1);
+    awaitAttempt(0).completeExceptionally(new FakeApiClientException("Not Found", 404));
+    assertFailsWithCode(result, 404);
+    Assert.assertEquals(1, attempts.size());
+  }
+
+  @Test
+  public void testRetriesStopWhenBudgetIsSpent() throws Exception {
+    RetryBudget budget = new RetryBudget(0, 1, () -> 0);
+    RequestAttempts<String> first = start(POLICY, budget, -1);
+    awaitAttempt(0).completeExceptionally(new FakeApiClientException("Unavailable", 503));
+    awaitAttempt(1).complete("user");
+    Assert.assertEquals("user", first.get(1, TimeUnit.SECONDS));
+    RequestAttempts<String> second = start(POLICY, budget, -1);
+    awaitAttempt(2).completeExceptionally(new FakeApiClientException("Unavailable", 503));
+    assertFailsWithCode(second, 503);
+  }
+
+  @Test
+  public void testHedgeWinsAndCancelsSlowAttempt() throws Exception {
+    RequestAttempts<String> result = start(null, new RetryBudget(0, 10, System::nanoTime),
+        TimeUnit.MILLISECONDS.toNanos(10));
+    CompletableFuture<String> slow = awaitAttempt(0);
+    awaitAttempt(1).complete("hedged");
+    Assert.assertEquals("hedged", result.get(1, TimeUnit.SECONDS));
+    // the loser is cancelled right after the result is published
+    try {
+      slow.get(1, TimeUnit.SECONDS);
+      Assert.fail("Expected the slow attempt to be cancelled");
+    } catch (CancellationException expected) {
+      Assert.assertTrue(slow.isCancelled());
+    }
+  }
+
+  @Test
+  public void testFailedAttemptDropsHedge() throws Exception {
+    RequestAttempts<String> result = start(POLICY, new RetryBudget(0, 10, System::nanoTime),
+        TimeUnit.MILLISECONDS.toNanos(100));
+    awaitAttempt(0).completeExceptionally(new FakeApiClientException("Unavailable", 503));
+    CompletableFuture<String> retry = awaitAttempt(1);
+    Thread.sleep(300);
+    Assert.assertEquals("The retry must not be hedged", 2, attempts.size());
+    retry.complete("user");
+    Assert.assertEquals("user", result.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancelCancelsAttempts() throws Exception {
+    RequestAttempts<String> result = start(POLICY, new RetryBudget(0, 10, System::nanoTime), -1);
+    CompletableFuture<String> attempt = awaitAttempt(0);
+    result.cancel(true);
+    Assert.assertTrue(attempt.isCancelled());
+  }
+
+  private static void assertFailsWithCode(CompletableFuture<String> result, int code)
+      throws InterruptedException, TimeoutException {
+    try {
+      result.get(1, TimeUnit.SECONDS);
+      Assert.fail("Expected a FakeApiClientException");
+    } catch (ExecutionException ex) {
+      Assert.assertEquals(code, ((FakeApiClientException) ex.getCause()).getCode());
+    }
+  }
+}
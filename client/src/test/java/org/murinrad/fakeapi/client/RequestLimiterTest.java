@@ -0,0 +1,116 @@
+package org.murinrad.fakeapi.client;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestLimiterTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  private RequestLimiter createLimiter(LimiterSettings.Builder settings) {
+    return new RequestLimiter(settings.build(), 64, now::get);
+  }
+
+  @Test
+  public void testQueuedUntilReleased() {
+    RequestLimiter limiter = createLimiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1));
+    Assert.assertTrue(limiter.acquire().isDone());
+    CompletableFuture<Void> queued = limiter.acquire();
+    Assert.assertFalse(queued.isDone());
+    limiter.release();
+    Assert.assertTrue(queued.isDone());
+    Assert.assertFalse(queued.isCompletedExceptionally());
+    Assert.assertEquals(1, limiter.getInFlight());
+  }
+
+  @Test
+  public void testRejectedWhenQueueFull() throws InterruptedException {
+    RequestLimiter limiter = createLimiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1)
+        .maxQueueSize(0));
+    limiter.acquire();
+    assertRejected(limiter.acquire());
+  }
+
+  @Test
+  public void testRejectedAfterQueueWait() throws InterruptedException {
+    RequestLimiter limiter = createLimiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1)
+        .maxQueueWait(Duration.ofMillis(20)));
+    limiter.acquire();
+    CompletableFuture<Void> queued = limiter.acquire();
+    assertRejected(queued);
+    limiter.release();
+    Assert.assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void testCancelledWaiterGivesUpItsPlace() {
+    RequestLimiter limiter = createLimiter(new LimiterSettings.Builder().initialLimit(1).minLimit(1));
+    limiter.acquire();
+    CompletableFuture<Void> cancelled = limiter.acquire();
+    CompletableFuture<Void> queued = limiter.acquire();
+    cancelled.cancel(false);
+    limiter.release();
+    Assert.assertTrue(queued.isDone());
+    Assert.assertEquals(1, limiter.getInFlight());
+  }
+
+  @Test
+  public void testAimdBacksOffOnDrops() {
+    RequestLimiter limiter = createLimiter(new LimiterSettings.Builder().algorithm(LimitAlgorithm.AIMD)
+        .initialLimit(20));
+    for (int i = 0; i < 20; i++) {
+      limiter.acquire();
+    }
+    for (int i = 0; i < 10; i++) {
+      limiter.release(1000, false);
+    }
+    Assert.assertEquals(20, limiter.getLimit());
+    limiter.release(1000, true);
+    Assert.assertEquals(18, limiter.getLimit());
+  }
+
+  @Test
+  public void testVegasFollowsLatency() {
+    RequestLimiter limiter = createLimiter(new LimiterSettings.Builder().algorithm(LimitAlgorithm.VEGAS)
+        .initialLimit(20));
+    for (int i = 0; i < 20; i++) {
+      limiter.acquire();
+    }
+    limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+    int grown = limiter.getLimit();
+    Assert.assertTrue(grown > 20);
+    limiter.acquire();
+    for (int i = 0; i < 5; i++) {
+      limiter.release(TimeUnit.MILLISECONDS.toNanos(100), false);
+      limiter.acquire();
+    }
+    Assert.assertTrue(limiter.getLimit() < grown);
+  }
+
+  @Test
+  public void testRateLimit() throws InterruptedException {
+    RequestLimiter limiter = createLimiter(new LimiterSettings.Builder().initialLimit(10)
+        .maxQueueWait(Duration.ofMillis(50)).rateLimit(10, 2));
+    Assert.assertTrue(limiter.acquire().isDone());
+    Assert.assertTrue(limiter.acquire().isDone());
+    // the next token is 100 ms away, longer than the allowed wait
+    assertRejected(limiter.acquire());
+    Assert.assertEquals(2, limiter.getInFlight());
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    Assert.assertTrue(limiter.acquire().isDone());
+  }
+
+  private static void assertRejected(CompletableFuture<Void> permit) throws InterruptedException {
+    try {
+      permit.get();
+      Assert.fail("Expected a RequestRejectedException");
+    } catch (ExecutionException ex) {
+      Assert.assertTrue(ex.getCause() instanceof RequestRejectedException);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResponseCacheTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  private ResponseCache<String, String> createCache(long ttlNanos, int maxEntries, long maxBytes) {
+    return new ResponseCache<>(new CacheSettings(Duration.ofNanos(ttlNanos), maxEntries, maxBytes),
+        String::length, now::get);
+  }
+
+  @Test
+  public void testHitAfterLoad() throws IOException, FakeApiClientException {
+    ResponseCache<String, String> cache = createCache(100, 10, 1000);
+    AtomicInteger loads = new AtomicInteger();
+    Assert.assertEquals("value", cache.get("key", () -> {
+      loads.incrementAndGet();
+      return "value";
+    }));
+    Assert.assertEquals("value", cache.get("key", () -> "value" + loads.incrementAndGet()));
+    Assert.assertEquals(1, loads.get());
+    Assert.assertEquals(1, cache.stats().getHitCount());
+    Assert.assertEquals(1, cache.stats().getMissCount());
+  }
+
+  @Test
+  public void testExpiry() throws IOException, FakeApiClientException {
+    ResponseCache<String, String> cache = createCache(100, 10, 1000);
+    cache.get("key", () -> "first");
+    now.addAndGet(100);
+    Assert.assertEquals("second", cache.get("key", () -> "second"));
+    Assert.assertEquals(1, cache.stats().getExpirationCount());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() throws IOException, FakeApiClientException {
+    ResponseCache<String, String> cache = createCache(100, 2, 1000);
+    cache.get("a", () -> "a");
+    cache.get("b", () -> "b");
+    cache.getIfPresent("a");
+    cache.get("c", () -> "c");
+    Assert.assertNull(cache.getIfPresent("b"));
+    Assert.assertEquals("a", cache.getIfPresent("a"));
+    Assert.assertEquals(1, cache.stats().getEvictionCount());
+  }
+
+  @Test
+  public void testWeightEviction() throws IOException, FakeApiClientException {
+    ResponseCache<String, String> cache = createCache(100, 10, 10);
+    cache.get("a", () -> "123456");
+    cache.get("b", () -> "123456");
+    Assert.assertNull(cache.getIfPresent("a"));
+    Assert.assertEquals(6, cache.stats().getEstimatedBytes());
+  }
+
+  @Test
+  public void testConcurrentMissesCoalesce() {
+    ResponseCache<String, String> cache = createCache(100, 10, 1000);
+    CompletableFuture<String> load = new CompletableFuture<>();
+    AtomicInteger loads = new AtomicInteger();
+    CompletableFuture<String> first = cache.getAsync("key", () -> {
+      loads.incrementAndGet();
+      return load;
+    });
+    CompletableFuture<String> second = cache.getAsync("key", () -> {
+      loads.incrementAndGet();
+      return load;
+    });
+    load.complete("value");
+    Assert.assertEquals("value", first.join());
+    Assert.assertEquals("value", second.join());
+    Assert.assertEquals(1, loads.get());
+    Assert.assertEquals(1, cache.stats().getCoalescedCount());
+  }
+
+  @Test
+  public void testFailedLoadIsNotCached() {
+    ResponseCache<String, String> cache = createCache(100, 10, 1000);
+    CompletableFuture<String> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new FakeApiClientException("Not Found", 404));
+    Assert.assertTrue(cache.getAsync("key", () -> failed).isCompletedExceptionally());
+    Assert.assertEquals("value", cache.getAsync("key", () -> CompletableFuture.completedFuture("value")).join());
+  }
+}
@@ -0,0 +1,133 @@
+package org.murinrad.fakeapi.client;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.transport.ConnectTimeoutException;
+import org.murinrad.fakeapi.client.transport.OkHttp2Transport;
+import org.murinrad.fakeapi.client.transport.OkHttp3Transport;
+import org.murinrad.fakeapi.client.transport.Transport;
+import org.murinrad.fakeapi.client.transport.TransportCallback;
+import org.murinrad.fakeapi.client.transport.TransportRequest;
+import org.murinrad.fakeapi.client.transport.TransportResponse;
+import org.murinrad.fakeapi.client.transport.TransportSettings;
+
+public class TransportTimeoutTest {
+
+  private static final TransportSettings SETTINGS = new TransportSettings.Builder()
+      .connectTimeout(Duration.ofMillis(300)).readTimeout(Duration.ofMillis(300)).build();
+
+  private final List<AutoCloseable> closeables = new ArrayList<>();
+
+  @After
+  public void after() throws Exception {
+    for (AutoCloseable closeable : closeables) {
+      closeable.close();
+    }
+  }
+
+  /**
+   * @return a server whose accept backlog is full, so further connects time out
+   */
+  private ServerSocket fullServer() throws IOException {
+    ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    closeables.add(server);
+    for (int i = 0; i < 10; i++) {
+      Socket socket = new Socket();
+      closeables.add(socket);
+      try {
+        socket.connect(server.getLocalSocketAddress(), 300);
+      } catch (SocketTimeoutException e) {
+        return server;
+      }
+    }
+    Assume.assumeTrue("Connects to a full backlog do not time out on this platform", false);
+    return server;
+  }
+
+  /**
+   * @return a server accepting connections and never answering
+   */
+  private ServerSocket silentServer() throws IOException {
+    ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    closeables.add(server);
+    return server;
+  }
+
+  private TransportRequest request(ServerSocket server) {
+    InetSocketAddress address = (InetSocketAddress) server.getLocalSocketAddress();
+    return new TransportRequest.Builder()
+        .url("http://" + address.getHostString() + ":" + address.getPort() + "/users/1").build();
+  }
+
+  private IOException execute(Transport transport, ServerSocket server) {
+    closeables.add(transport);
+    try {
+      transport.newCall(request(server)).execute().close();
+    } catch (IOException e) {
+      return e;
+    }
+    throw new AssertionError("Expected the call to fail");
+  }
+
+  private IOException enqueue(Transport transport, ServerSocket server) throws Exception {
+    closeables.add(transport);
+    CompletableFuture<IOException> failure = new CompletableFuture<>();
+    transport.newCall(request(server)).enqueue(new TransportCallback() {
+      @Override
+      public void onFailure(TransportRequest request, IOException e) {
+        failure.complete(e);
+      }
+
+      @Override
+      public void onResponse(TransportResponse response) {
+        failure.completeExceptionally(new AssertionError("Expected the call to fail"));
+      }
+    });
+    return failure.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testOkHttp2ConnectTimeout() throws Exception {
+    ServerSocket server = fullServer();
+    Assert.assertTrue(execute(new OkHttp2Transport(SETTINGS), server) instanceof ConnectTimeoutException);
+    Assert.assertTrue(enqueue(new OkHttp2Transport(SETTINGS), server) instanceof ConnectTimeoutException);
+  }
+
+  @Test
+  public void testOkHttp3ConnectTimeout() throws Exception {
+    ServerSocket server = fullServer();
+    Assert.assertTrue(execute(new OkHttp3Transport(SETTINGS), server) instanceof ConnectTimeoutException);
+    Assert.assertTrue(enqueue(new OkHttp3Transport(SETTINGS), server) instanceof ConnectTimeoutException);
+  }
+
+  @Test
+  public void testReadTimeoutIsNotConnectTimeout() throws Exception {
+    ServerSocket server = silentServer();
+    for (Transport transport : new Transport[] {new OkHttp2Transport(SETTINGS), new OkHttp3Transport(SETTINGS)}) {
+      IOException failure = execute(transport, server);
+      Assert.assertTrue(failure.toString(), failure instanceof SocketTimeoutException);
+      Assert.assertFalse(failure instanceof ConnectTimeoutException);
+      Assert.assertFalse(RetryPolicy.isRetryable(failure));
+    }
+  }
+
+  @Test
+  public void testOnlyConnectTimeoutsAreRetried() {
+    SocketTimeoutException timeout = new SocketTimeoutException("connect timed out");
+    Assert.assertFalse(RetryPolicy.isRetryable(timeout));
+    Assert.assertTrue(RetryPolicy.isRetryable(new ConnectTimeoutException(timeout)));
+  }
+}
@@ -0,0 +1,126 @@
+package org.murinrad.fakeapi.client.datamodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UserOverviewCodecTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static UserOverview overview(int posts) {
+    List<Post> list = new ArrayList<>();
+    for (int i = 0; i < posts; i++) {
+      list.add(new Post(i * 1000L, "title " + i + " \u00e9t\u00e9 \u4e2d \ud83d\ude00"));
+    }
+    return new UserOverview("Leanne Graham", "Bret", "Sincere@april.biz", list);
+  }
+
+  private static void assertOverviewEquals(UserOverview expected, UserOverview actual) {
+    Assert.assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void testRoundTrip() {
+    UserOverview overview = overview(3);
+    byte[] bytes = UserOverviewCodec.encode(overview);
+    Assert.assertEquals(UserOverviewCodec.encodedSize(overview), bytes.length);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    assertOverviewEquals(overview, UserOverviewCodec.decodeUserOverview(buffer));
+    Assert.assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void testDirectBufferAndNulls() {
+    UserOverview overview = new UserOverview(null, "", "e", Collections.singletonList(new Post(Long.MAX_VALUE, null)));
+    ByteBuffer buffer = ByteBuffer.allocateDirect(UserOverviewCodec.encodedSize(overview));
+    UserOverviewCodec.encode(overview, buffer);
+    buffer.flip();
+    UserOverview decoded = UserOverviewCodec.decodeUserOverview(buffer);
+    Assert.assertNull(decoded.getName());
+    Assert.assertEquals("", decoded.getUsername());
+    Assert.assertEquals(Long.MAX_VALUE, decoded.getPosts().get(0).getId());
+    Assert.assertNull(decoded.getPosts().get(0).getTitle());
+  }
+
+  @Test
+  public void testUnpairedSurrogateIsReplaced() {
+    Post post = new Post(1, "a\ud83db");
+    ByteBuffer buffer = ByteBuffer.allocate(UserOverviewCodec.encodedSize(post));
+    UserOverviewCodec.encode(post, buffer);
+    Assert.assertFalse(buffer.hasRemaining());
+    buffer.flip();
+    Assert.assertEquals("a\ufffdb", UserOverviewCodec.decodePost(buffer).getTitle());
+  }
+
+  @Test
+  public void testCompactIds() {
+    Assert.assertEquals(1, UserOverviewCodec.varintSize(127));
+    Assert.assertEquals(2, UserOverviewCodec.varintSize(128));
+    Assert.assertEquals(10, UserOverviewCodec.varintSize(-1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMalformedLength() {
+    UserOverviewCodec.decodeUserOverview(ByteBuffer.wrap(new byte[] {(byte) 0x7F, 1, 2}));
+  }
+
+  @Test
+  public void testStreamThroughChannel() throws IOException {
+    List<UserOverview> overviews = Arrays.asList(overview(0), overview(5), overview(20000));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    UserOverviewCodec.writeAll(overviews, Channels.newChannel(out));
+    List<UserOverview> decoded = UserOverviewCodec.readAll(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+    Assert.assertEquals(overviews.size(), decoded.size());
+    for (int i = 0; i < overviews.size(); i++) {
+      assertOverviewEquals(overviews.get(i), decoded.get(i));
+    }
+  }
+
+  @Test
+  public void testStreamThroughMappedFile() throws IOException {
+    Path file = folder.newFile("overviews.bin").toPath();
+    List<UserOverview> overviews = Arrays.asList(overview(1), overview(2));
+    UserOverviewCodec.writeAll(overviews, file);
+    List<UserOverview> decoded = UserOverviewCodec.readAll(file);
+    assertOverviewEquals(overviews.get(1), decoded.get(1));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    UserOverviewCodec.writeAll(Collections.singletonList(overview(2)), Channels.newChannel(out));
+    byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 3);
+    UserOverviewCodec.readAll(Channels.newChannel(new ByteArrayInputStream(truncated)));
+  }
+
+  @Test
+  public void testTruncatedMappedFile() throws IOException {
+    Path file = folder.newFile("overviews.bin").toPath();
+    UserOverviewCodec.writeAll(Collections.singletonList(overview(20000)), file);
+    byte[] written = Files.readAllBytes(file);
+    // cut within the frame size, then within the overview
+    for (int length : new int[] {6, written.length - 3}) {
+      Files.write(file, Arrays.copyOf(written, length));
+      try {
+        UserOverviewCodec.readAll(file);
+        Assert.fail("Expected an IOException for " + length + " bytes");
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package org.murinrad.fakeapi.client.datamodel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UserOverviewTest {
+
+  @Test
+  public void testJsonRoundTrip() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    String json = "{\"name\": \"Leanne Graham\", \"username\": \"Bret\", \"email\": \"Sincere@april.biz\","
+        + " \"extra\": 1, \"posts\": [{\"id\": 1, \"userId\": 1, \"title\": \"t\"}]}";
+    UserOverview overview = mapper.readValue(json, UserOverview.class);
+    Assert.assertEquals("Bret", overview.getUsername());
+    Assert.assertEquals(1L, overview.getPosts().get(0).getId());
+    Assert.assertEquals("t", overview.getPosts().get(0).getTitle());
+    UserOverview copy = mapper.readValue(mapper.writeValueAsBytes(overview), UserOverview.class);
+    Assert.assertEquals(overview.toString(), copy.toString());
+  }
+
+  @Test
+  public void testPostsAreAdopted() {
+    List<Post> posts = new ArrayList<>();
+    UserOverview overview = new UserOverview("n", "u", "e", posts);
+    posts.add(new Post(1, "t"));
+    Assert.assertEquals(1, overview.getPosts().size());
+    Assert.assertTrue(new UserOverview("n", "u", "e", null).getPosts().isEmpty());
+  }
+}
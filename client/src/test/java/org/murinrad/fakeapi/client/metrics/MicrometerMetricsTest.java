@@ -0,0 +1,63 @@
+package org.murinrad.fakeapi.client.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.transport.OkHttp2Transport;
+
+public class MicrometerMetricsTest {
+
+  private SimpleMeterRegistry registry;
+  private MicrometerMetrics tested;
+
+  @Before
+  public void before() {
+    registry = new SimpleMeterRegistry();
+    tested = new MicrometerMetrics(registry);
+  }
+
+  @Test
+  public void testRequestsTimedPerEndpoint() {
+    tested.requestCompleted(Endpoint.USER, 200, TimeUnit.MILLISECONDS.toNanos(5));
+    tested.requestCompleted(Endpoint.USER, 200, TimeUnit.MILLISECONDS.toNanos(7));
+    tested.requestCompleted(Endpoint.POSTS_BY_USER, 200, TimeUnit.MILLISECONDS.toNanos(3));
+    Assert.assertEquals(2, registry.get("fakeapi.client.requests").tag("endpoint", "/users/").timer().count());
+    Assert.assertEquals(12, registry.get("fakeapi.client.requests").tag("endpoint", "/users/").timer()
+        .totalTime(TimeUnit.MILLISECONDS), 0.001);
+    Assert.assertEquals(1, registry.get("fakeapi.client.requests").tag("endpoint", "/posts?userId=").timer()
+        .count());
+    Assert.assertTrue(registry.find("fakeapi.client.errors").counters().isEmpty());
+  }
+
+  @Test
+  public void testErrorsCountedByStatus() {
+    tested.requestCompleted(Endpoint.USER, 404, 1);
+    tested.requestCompleted(Endpoint.USER, 404, 1);
+    tested.requestCompleted(Endpoint.USER, 503, 1);
+    tested.requestFailed(Endpoint.ALL_POSTS, 1);
+    Assert.assertEquals(2, registry.get("fakeapi.client.errors").tags("endpoint", "/users/", "status", "404")
+        .counter().count(), 0.001);
+    Assert.assertEquals(1, registry.get("fakeapi.client.errors").tags("endpoint", "/users/", "status", "503")
+        .counter().count(), 0.001);
+    Assert.assertEquals(1, registry.get("fakeapi.client.errors").tags("endpoint", "/posts/", "status", "IO_ERROR")
+        .counter().count(), 0.001);
+  }
+
+  @Test
+  public void testBodyAndTransportGauges() {
+    tested.bodyRead(Endpoint.POSTS_BY_USER, 2048, TimeUnit.MILLISECONDS.toNanos(2));
+    OkHttp2Transport transport = new OkHttp2Transport();
+    try {
+      tested.bindTransport(transport);
+      Assert.assertEquals(2048, registry.get("fakeapi.client.response.size").tag("endpoint", "/posts?userId=")
+          .summary().totalAmount(), 0.001);
+      Assert.assertEquals(1, registry.get("fakeapi.client.parse").tag("endpoint", "/posts?userId=").timer().count());
+      Assert.assertEquals(0, registry.get("fakeapi.client.calls.running").gauge().value(), 0.001);
+      Assert.assertEquals(0, registry.get("fakeapi.client.calls.queued").gauge().value(), 0.001);
+    } finally {
+      transport.close();
+    }
+  }
+}
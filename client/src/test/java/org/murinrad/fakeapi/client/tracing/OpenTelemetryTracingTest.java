@@ -0,0 +1,150 @@
+package org.murinrad.fakeapi.client.tracing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.murinrad.fakeapi.client.FakeAPIClient;
+import org.murinrad.fakeapi.client.FakeApiClientException;
+
+public class OpenTelemetryTracingTest {
+
+  private final Set<String> traceparents = ConcurrentHashMap.newKeySet();
+  private HttpServer server;
+  private InMemorySpanExporter exporter;
+  private OpenTelemetrySdk openTelemetry;
+  private FakeAPIClient tested;
+
+  @Before
+  public void before() throws IOException {
+    byte[] userData = IOUtils.toByteArray(FakeAPIClient.class.getResourceAsStream("user_data_1.json"));
+    byte[] postData = IOUtils.toByteArray(FakeAPIClient.class.getResourceAsStream("posts_data_1.json"));
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/users/1", exchange -> respond(exchange, 200, userData));
+    server.createContext("/users/123", exchange -> respond(exchange, 404, "{}".getBytes()));
+    server.createContext("/posts", exchange -> respond(exchange, 200, postData));
+    server.start();
+    exporter = InMemorySpanExporter.create();
+    openTelemetry = OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(exporter)).build())
+        .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+        .build();
+    tested = FakeAPIClient.builder().apiBaseURL("http://localhost:" + server.getAddress().getPort())
+        .tracing(new OpenTelemetryTracing(openTelemetry))
+        .build();
+  }
+
+  @After
+  public void after() {
+    tested.close();
+    server.stop(0);
+    openTelemetry.getSdkTracerProvider().close();
+  }
+
+  private void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+    String traceparent = exchange.getRequestHeaders().getFirst("traceparent");
+    if (traceparent != null) {
+      traceparents.add(traceparent);
+    }
+    try {
+      // completes the overviews on the transport threads
+      TimeUnit.MILLISECONDS.sleep(50);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    exchange.sendResponseHeaders(code, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static SpanData overviewSpan(List<SpanData> spans) {
+    return spans.stream().filter(span -> span.getName().equals("fakeapi.overview")).findFirst()
+        .orElseThrow(AssertionError::new);
+  }
+
+  @Test
+  public void testOverviewSpanParentsRequestSpans() throws ExecutionException, InterruptedException {
+    Tracer tracer = openTelemetry.getTracer("test");
+    Span caller = tracer.spanBuilder("caller").startSpan();
+    SpanContext continuation;
+    Scope scope = caller.makeCurrent();
+    try {
+      continuation = tested.retrieveUserOverviewAsync(1L)
+          .thenApply(overview -> Span.current().getSpanContext()).get();
+    } finally {
+      scope.close();
+      caller.end();
+    }
+    Assert.assertEquals("The continuation should run in the caller context", caller.getSpanContext(), continuation);
+
+    List<SpanData> spans = exporter.getFinishedSpanItems();
+    SpanData overview = overviewSpan(spans);
+    Assert.assertEquals(caller.getSpanContext().getSpanId(), overview.getParentSpanId());
+    Assert.assertEquals(Long.valueOf(1), overview.getAttributes().get(AttributeKey.longKey("fakeapi.user_id")));
+    List<SpanData> requests = spans.stream().filter(span -> span.getKind() == SpanKind.CLIENT)
+        .collect(Collectors.toList());
+    Assert.assertEquals(2, requests.size());
+    for (SpanData request : requests) {
+      Assert.assertEquals(overview.getSpanId(), request.getParentSpanId());
+      Assert.assertEquals(caller.getSpanContext().getTraceId(), request.getTraceId());
+      Assert.assertEquals(Long.valueOf(200), request.getAttributes().get(AttributeKey.longKey("http.status_code")));
+      Assert.assertNotNull(request.getAttributes().get(AttributeKey.doubleKey("fakeapi.queue_ms")));
+      Assert.assertNotNull(request.getAttributes().get(AttributeKey.doubleKey("fakeapi.network_ms")));
+      Assert.assertNotNull(request.getAttributes().get(AttributeKey.doubleKey("fakeapi.parse_ms")));
+      Assert.assertTrue("The server should receive the request span",
+          traceparents.contains("00-" + request.getTraceId() + "-" + request.getSpanId() + "-01"));
+    }
+  }
+
+  @Test
+  public void testFailedOverviewRecordsError() throws IOException {
+    try {
+      tested.retrieveUserOverview(123L);
+      Assert.fail("Expected a FakeApiClientException");
+    } catch (FakeApiClientException ex) {
+      Assert.assertEquals(404, ex.getCode());
+    }
+    List<SpanData> spans = exporter.getFinishedSpanItems();
+    Assert.assertEquals(StatusCode.ERROR, overviewSpan(spans).getStatus().getStatusCode());
+    Assert.assertTrue(spans.stream().anyMatch(span -> span.getKind() == SpanKind.CLIENT
+        && Long.valueOf(404).equals(span.getAttributes().get(AttributeKey.longKey("http.status_code")))
+        && span.getStatus().getStatusCode() == StatusCode.ERROR));
+  }
+
+  @Test
+  public void testSyncRequestsAreTraced() throws IOException, FakeApiClientException {
+    tested.streamUserPosts(1L).close();
+    List<SpanData> spans = exporter.getFinishedSpanItems();
+    Assert.assertEquals(1, spans.size());
+    Assert.assertEquals(SpanKind.CLIENT, spans.get(0).getKind());
+    Assert.assertFalse(spans.get(0).getParentSpanContext().isValid());
+  }
+}